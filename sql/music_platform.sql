@@ -93,9 +93,13 @@ CREATE TABLE IF NOT EXISTS `music` (
     `is_original` TINYINT DEFAULT 1 COMMENT '是否原创(0:翻唱,1:原创)',
     `copyright_info` TEXT COMMENT '版权信息',
     `status` TINYINT DEFAULT 0 COMMENT '状态(0:待审核,1:已通过,2:已拒绝)',
+    `loudness` DOUBLE COMMENT '积分响度(LUFS)',
+    `loudness_peak` DOUBLE COMMENT '采样峰值(线性,1.0为满幅度)',
+    `loudness_analyzed` TINYINT NOT NULL DEFAULT 0 COMMENT '是否已分析响度(静音或无法解码时响度为空)',
     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
     `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_title (`title`),
+    INDEX idx_file_path (`file_path`),
     INDEX idx_artist (`artist`),
     INDEX idx_genre (`genre`),
     INDEX idx_status (`status`),
@@ -261,6 +265,57 @@ CREATE TABLE IF NOT EXISTS `stats_cache` (
     INDEX idx_date (`stat_date`)
     ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='统计缓存表';
 
+-- 媒体文件引用计数表（内容寻址存储，文件名为内容的 SHA-256）
+CREATE TABLE IF NOT EXISTS `media_blob` (
+                                            `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                            `store` VARCHAR(20) NOT NULL COMMENT '存储分类(music/cover/image/video/avatar)',
+    `file_name` VARCHAR(100) NOT NULL COMMENT '存储文件名(sha256.扩展名)',
+    `file_size` BIGINT NOT NULL COMMENT '文件大小(字节)',
+    `ref_count` INT NOT NULL DEFAULT 1 COMMENT '引用计数',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY `uk_store_file` (`store`, `file_name`)
+    ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='媒体文件引用计数表';
+
+-- 本地曲库导入进度表（按源文件记录，导入任务中断后可从断点继续）
+CREATE TABLE IF NOT EXISTS `music_import_item` (
+                                                   `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                                   `source_path` VARCHAR(500) NOT NULL COMMENT '源文件路径',
+    `file_size` BIGINT NOT NULL COMMENT '源文件大小',
+    `last_modified` BIGINT NOT NULL COMMENT '源文件修改时间(毫秒)',
+    `status` TINYINT NOT NULL COMMENT '状态(1:已导入,2:失败)',
+    `file_path` VARCHAR(200) COMMENT '存储文件名',
+    `error_message` VARCHAR(500) COMMENT '失败原因',
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY `uk_source_path` (`source_path`),
+    INDEX idx_status (`status`)
+    ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='本地曲库导入进度表';
+
+-- 媒体处理任务队列表（缩略图、波形、响度分析等后台任务，工作线程用 FOR UPDATE SKIP LOCKED 领取）
+CREATE TABLE IF NOT EXISTS `media_job` (
+                                           `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                           `job_type` VARCHAR(40) NOT NULL COMMENT '任务类型',
+    `payload` VARCHAR(500) NOT NULL COMMENT '任务参数(如文件路径)',
+    `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态(0:待处理,1:处理中,2:已完成,3:失败)',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    `max_attempts` INT NOT NULL DEFAULT 5 COMMENT '最大执行次数',
+    `run_after` DATETIME(3) NOT NULL COMMENT '最早执行时间(重试退避)',
+    `lease_until` DATETIME(3) COMMENT '租约到期时间(处理中)',
+    `locked_by` VARCHAR(64) COMMENT '领取标识',
+    `last_error` VARCHAR(500) COMMENT '最近一次失败原因',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_type_status_run (`job_type`, `status`, `run_after`),
+    INDEX idx_status_lease (`status`, `lease_until`),
+    INDEX idx_type_payload (`job_type`, `payload`)
+    ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='媒体处理任务队列表';
+
+-- 已有数据库升级（表已存在时 CREATE TABLE IF NOT EXISTS 不会加新列，从旧版本升级时手动执行一次）
+-- ALTER TABLE `music` ADD COLUMN `loudness` DOUBLE COMMENT '积分响度(LUFS)' AFTER `status`,
+--     ADD COLUMN `loudness_peak` DOUBLE COMMENT '采样峰值(线性,1.0为满幅度)' AFTER `loudness`,
+--     ADD COLUMN `loudness_analyzed` TINYINT NOT NULL DEFAULT 0 COMMENT '是否已分析响度(静音或无法解码时响度为空)' AFTER `loudness_peak`,
+--     ADD INDEX idx_file_path (`file_path`);
+
 
 -- =========================================================
 -- 2. 数据初始化 (角色、用户、关联)
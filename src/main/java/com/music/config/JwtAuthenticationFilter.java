@@ -47,6 +47,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // 由于context-path是/api，实际请求路径是/api/auth/login和/api/auth/register
         boolean isAuthPath = requestURI.equals("/api/auth/login") || requestURI.equals("/api/auth/register");
         boolean isPostMethod = method.equalsIgnoreCase("POST");
+        // 签名媒体地址自带授权，跳过 JWT 解析和用户查询（不打日志，避免每个分段请求都输出）
+        if (requestURI.startsWith(request.getContextPath() + "/media/")) {
+            return true;
+        }
         boolean shouldNotFilter = isAuthPath && isPostMethod;
         
         // 添加关键日志
@@ -58,8 +58,12 @@ public class RedisConfig {
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer))
                 .disableCachingNullValues();
 
+        // transactionAware：事务中的缓存写入/清除在事务提交后才执行，回滚时缓存不变；
+        // enableStatistics：记录各缓存的命中/未命中次数，见 /admin/cache/stats
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                .transactionAware()
+                .enableStatistics()
                 .build();
     }
 }
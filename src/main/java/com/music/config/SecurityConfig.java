@@ -60,6 +60,7 @@ public class SecurityConfig {
                         .requestMatchers("/public/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/music/**").permitAll()
                         .requestMatchers("/files/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/media/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/comments/**").permitAll()
                         .requestMatchers("/user/**").hasAnyRole("USER", "ADMIN", "MUSICIAN")
                         .requestMatchers("/musician/**").hasRole("MUSICIAN")
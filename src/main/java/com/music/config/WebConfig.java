@@ -2,9 +2,12 @@ package com.music.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.time.Duration;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -20,22 +23,32 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${file.upload.avatar.path}")
     private String avatarUploadPath;
 
+    @Value("${media.cache.max-age-seconds:3600}")
+    private long maxAgeSeconds;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // 静态资源短期缓存，过期后按 Last-Modified 条件请求校验（未修改时返回 304）
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+
         // 配置图片资源访问路径
         registry.addResourceHandler("/files/image/**")
-                .addResourceLocations("file:" + imageUploadPath);
+                .addResourceLocations("file:" + imageUploadPath)
+                .setCacheControl(cacheControl);
 
         // 配置视频资源访问路径
         registry.addResourceHandler("/files/video/**")
-                .addResourceLocations("file:" + videoUploadPath);
+                .addResourceLocations("file:" + videoUploadPath)
+                .setCacheControl(cacheControl);
 
         // 配置封面资源访问路径
         registry.addResourceHandler("/files/cover/**")
-                .addResourceLocations("file:" + coverUploadPath);
+                .addResourceLocations("file:" + coverUploadPath)
+                .setCacheControl(cacheControl);
 
         // 配置头像资源访问路径
         registry.addResourceHandler("/files/avatar/**")
-                .addResourceLocations("file:" + avatarUploadPath);
+                .addResourceLocations("file:" + avatarUploadPath)
+                .setCacheControl(cacheControl);
     }
 }
@@ -13,21 +13,36 @@ import com.music.repository.UserRepository;
 import com.music.repository.PlayRecordRepository;
 import com.music.repository.MusicLikeRepository;
 import com.music.repository.UserFollowRepository;
-import com.music.util.FileUploadUtil;
+import com.music.server.MediaServer;
+import com.music.service.BandwidthLimiter;
+import com.music.service.EngagementCounterService;
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.LikedSetCache;
+import com.music.service.LoudnessService;
+import com.music.service.MediaJobService;
+import com.music.service.MusicImportService;
+import com.music.service.PlayEventService;
+import com.music.service.PreviewService;
+import com.music.service.StorageScrubberService;
+import com.music.service.StorageTierService;
+import com.music.service.WaveformService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/admin")
@@ -43,7 +58,34 @@ public class AdminController {
     private PostRepository postRepository;
 
     @Autowired
-    private FileUploadUtil fileUploadUtil;
+    private MusicImportService musicImportService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private MediaServer mediaServer;
+
+    @Autowired
+    private BandwidthLimiter bandwidthLimiter;
+
+    @Autowired
+    private StorageScrubberService storageScrubberService;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Autowired
+    private WaveformService waveformService;
+
+    @Autowired
+    private LoudnessService loudnessService;
+
+    @Autowired
+    private MediaJobService mediaJobService;
     
     @Autowired
     private RoleRepository roleRepository;
@@ -69,6 +111,21 @@ public class AdminController {
     @Autowired
     private UserFollowRepository userFollowRepository;
 
+    @Autowired
+    private PlayEventService playEventService;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private LikedSetCache likedSetCache;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
     // 获取平台概览统计数据
     @GetMapping("/dashboard")
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
@@ -111,71 +168,193 @@ public class AdminController {
         return getDashboardStats();
     }
 
-    // 批量导入本地音乐文件夹中的mp3到系统
-    @PostMapping("/import-local-music")
-    public ResponseEntity<Map<String, Object>> importLocalMusic() throws IOException {
-        Map<String, Object> result = new HashMap<>();
-        // 项目根目录下的“音乐”文件夹
-        File sourceDir = new File("f:/JavaBiShe/Design and Implementation of  Socialized Music Platform/音乐");
-        if (!sourceDir.exists() || !sourceDir.isDirectory()) {
-            result.put("success", false);
-            result.put("message", "未找到本地音乐目录");
-            return ResponseEntity.ok(result);
-        }
+    // 播放事件写入管道的运行指标（队列积压、丢弃数、批量落库情况）
+    @GetMapping("/play-events/stats")
+    public ResponseEntity<Map<String, Object>> getPlayEventStats() {
+        return ResponseEntity.ok(playEventService.getStats());
+    }
 
-        User admin = userRepository.findByUsername("admin").orElse(null);
-        Long musicianId = admin != null ? admin.getId() : 1L;
-
-        int imported = 0;
-        for (File src : sourceDir.listFiles()) {
-            if (src.isFile() && src.getName().toLowerCase().endsWith(".mp3")) {
-                String originalName = src.getName();
-                String baseName = originalName.substring(0, originalName.lastIndexOf('.'));
-                String title = baseName;
-                String artist = "未知";
-                if (baseName.contains("-")) {
-                    String[] parts = baseName.split("-");
-                    if (parts.length >= 2) {
-                        title = parts[0].trim();
-                        artist = parts[1].trim();
-                    }
-                }
-
-                String filename = UUID.randomUUID().toString() + ".mp3";
-                File dest = new File(fileUploadUtil.getMusicFilePath(filename));
-                dest.getParentFile().mkdirs();
-                Files.copy(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-                Music music = new Music();
-                music.setTitle(title);
-                music.setArtist(artist);
-                music.setAlbum(null);
-                music.setGenre(null);
-                music.setDuration(240);
-                music.setFilePath(filename);
-                music.setCoverPath(null);
-                music.setLyricPath(null);
-                music.setDescription("本地导入");
-                music.setPlayCount(0);
-                music.setDownloadCount(0);
-                music.setCommentCount(0);
-                music.setLikeCount(0);
-                music.setShareCount(0);
-                music.setMusicianId(musicianId);
-                music.setIsOriginal(0);
-                music.setCopyrightInfo(null);
-                music.setStatus(1); // 直接设为已通过，便于前端展示
-                musicRepository.save(music);
-                imported++;
+    // 互动计数统计（各计数累加次数、合并后的行更新次数、积压）
+    @GetMapping("/counters/stats")
+    public ResponseEntity<Map<String, Object>> getCounterStats() {
+        return ResponseEntity.ok(engagementCounterService.getStats());
+    }
+
+    // 点赞集合缓存统计（缓存的用户数、估算内存占用、每用户/每个点赞的字节数、命中率）
+    @GetMapping("/liked-set/stats")
+    public ResponseEntity<Map<String, Object>> getLikedSetStats() {
+        return ResponseEntity.ok(likedSetCache.getStats());
+    }
+
+    // 各 Redis 缓存的命中率（本节点启动以来的读取、命中、未命中、写入、清除次数及统计起始时间）
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof TransactionAwareCacheDecorator decorator) {
+                cache = decorator.getTargetCache();
+            }
+            if (!(cache instanceof RedisCache redisCache)) {
+                continue;
             }
+            CacheStatistics statistics = redisCache.getStatistics();
+            Map<String, Object> cacheStats = new LinkedHashMap<>();
+            long lookups = statistics.getHits() + statistics.getMisses();
+            cacheStats.put("gets", statistics.getGets());
+            cacheStats.put("hits", statistics.getHits());
+            cacheStats.put("misses", statistics.getMisses());
+            cacheStats.put("hitRate", lookups > 0 ? (double) statistics.getHits() / lookups : 0);
+            cacheStats.put("puts", statistics.getPuts());
+            cacheStats.put("deletes", statistics.getDeletes());
+            cacheStats.put("since", statistics.getSince());
+            stats.put(name, cacheStats);
         }
+        return ResponseEntity.ok(stats);
+    }
 
-        result.put("success", true);
-        result.put("imported", imported);
-        result.put("message", "导入完成");
+    // 图片缩略图生成统计
+    @GetMapping("/image-variants/stats")
+    public ResponseEntity<Map<String, Object>> getImageVariantStats() {
+        return ResponseEntity.ok(imageVariantService.getStats());
+    }
+
+    // 试听片段生成与流量统计
+    @GetMapping("/previews/stats")
+    public ResponseEntity<Map<String, Object>> getPreviewStats() {
+        return ResponseEntity.ok(previewService.getStats());
+    }
+
+    // 热门歌曲内存缓存统计
+    @GetMapping("/hot-cache/stats")
+    public ResponseEntity<Map<String, Object>> getHotCacheStats() {
+        return ResponseEntity.ok(hotTrackCache.getStats());
+    }
+
+    // 波形生成统计
+    @GetMapping("/waveform/stats")
+    public ResponseEntity<Map<String, Object>> getWaveformStats() {
+        return ResponseEntity.ok(waveformService.getStats());
+    }
+
+    // 响度分析统计
+    @GetMapping("/loudness/stats")
+    public ResponseEntity<Map<String, Object>> getLoudnessStats() {
+        return ResponseEntity.ok(loudnessService.getStats());
+    }
+
+    // 为尚未分析响度的歌曲入队分析（如本功能上线前的存量歌曲）
+    @PostMapping("/loudness/backfill")
+    public ResponseEntity<Map<String, Object>> backfillLoudness(@RequestParam(defaultValue = "500") int limit) {
+        Map<String, Object> result = new HashMap<>(loudnessService.getStats());
+        result.put("submitted", loudnessService.backfill(limit));
         return ResponseEntity.ok(result);
     }
 
+    // 媒体任务队列统计（各类型按状态的任务数、最早待处理任务时间、本节点处理统计）
+    @GetMapping("/jobs/stats")
+    public ResponseEntity<Map<String, Object>> getJobStats() {
+        return ResponseEntity.ok(mediaJobService.getStats());
+    }
+
+    // 重试次数用尽的失败任务（最近的在前），type 为空时返回所有类型
+    @GetMapping("/jobs/failed")
+    public ResponseEntity<List<Map<String, Object>>> getFailedJobs(
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(mediaJobService.listFailed(type, limit));
+    }
+
+    // 手动重试失败的任务（重置执行次数）
+    @PostMapping("/jobs/{id}/retry")
+    public ResponseEntity<Void> retryJob(@PathVariable Long id) {
+        return mediaJobService.retryFailed(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    // 下载限速统计（整形字节数、等待时间、因并发超限被拒绝的请求与字节数）
+    @GetMapping("/bandwidth/stats")
+    public ResponseEntity<Map<String, Object>> getBandwidthStats() {
+        return ResponseEntity.ok(bandwidthLimiter.getStats());
+    }
+
+    // 独立媒体服务器连接统计
+    @GetMapping("/media-server/stats")
+    public ResponseEntity<Map<String, Object>> getMediaServerStats() {
+        return ResponseEntity.ok(mediaServer.getStats());
+    }
+
+    // 批量导入本地音乐目录中的mp3（后台任务，立即返回；sourceDir 为空时使用 music.import.source-dir，否则须为其子目录）
+    @PostMapping("/import-local-music")
+    public ResponseEntity<Map<String, Object>> importLocalMusic(@RequestParam(required = false) String sourceDir) {
+        try {
+            if (!musicImportService.start(sourceDir)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(musicImportService.getStatus());
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(musicImportService.getStatus());
+    }
+
+    // 本地音乐导入任务进度
+    @GetMapping("/import-local-music/status")
+    public ResponseEntity<Map<String, Object>> getImportStatus() {
+        return ResponseEntity.ok(musicImportService.getStatus());
+    }
+
+    // 停止本地音乐导入任务（已处理的文件会保存，下次导入时跳过）
+    @PostMapping("/import-local-music/cancel")
+    public ResponseEntity<Map<String, Object>> cancelImport() {
+        musicImportService.cancel();
+        return ResponseEntity.ok(musicImportService.getStatus());
+    }
+
+    // 启动存储巡检（后台任务，立即返回）；dryRun 为 true 时只生成孤儿文件/缺失文件报告，不删除
+    @PostMapping("/storage/scrub")
+    public ResponseEntity<Map<String, Object>> scrubStorage(@RequestParam(defaultValue = "true") boolean dryRun) {
+        if (!storageScrubberService.start(dryRun)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(storageScrubberService.getStatus());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(storageScrubberService.getStatus());
+    }
+
+    // 存储巡检进度与最近一次报告
+    @GetMapping("/storage/scrub/status")
+    public ResponseEntity<Map<String, Object>> getScrubStatus() {
+        return ResponseEntity.ok(storageScrubberService.getStatus());
+    }
+
+    // 停止正在进行的存储巡检
+    @PostMapping("/storage/scrub/cancel")
+    public ResponseEntity<Map<String, Object>> cancelScrub() {
+        storageScrubberService.cancel();
+        return ResponseEntity.ok(storageScrubberService.getStatus());
+    }
+
+    // 立即运行一次冷门文件降级（后台任务，立即返回）
+    @PostMapping("/storage/tiering/run")
+    public ResponseEntity<Map<String, Object>> runTiering() {
+        if (!storageTierService.start()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(storageTierService.getStats());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(storageTierService.getStats());
+    }
+
+    // 停止正在进行的降级任务
+    @PostMapping("/storage/tiering/cancel")
+    public ResponseEntity<Map<String, Object>> cancelTiering() {
+        storageTierService.cancel();
+        return ResponseEntity.ok(storageTierService.getStats());
+    }
+
+    // 分层存储统计（存储目录/归档目录命中次数、恢复耗时、已归档文件与节省的空间、最近一次降级报告）
+    @GetMapping("/storage/tiering/stats")
+    public ResponseEntity<Map<String, Object>> getTieringStats() {
+        return ResponseEntity.ok(storageTierService.getStats());
+    }
+
     // 获取用户列表
     @GetMapping("/users")
     public ResponseEntity<List<User>> getUsers() {
@@ -0,0 +1,133 @@
+package com.music.controller;
+
+import com.music.dto.ChunkUploadSession;
+import com.music.entity.User;
+import com.music.service.ChunkUploadService;
+import com.music.service.ImageVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// 分片上传：init -> PUT 各分片（可乱序、可重传）-> complete；断线后 GET 查询已完成分片继续上传
+@RestController
+@RequestMapping("/upload/chunked")
+public class ChunkUploadController {
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Value("${file.access.image.url}")
+    private String imageAccessUrl;
+
+    @Value("${file.access.video.url}")
+    private String videoAccessUrl;
+
+    // 创建上传会话
+    @PostMapping("/init")
+    public ResponseEntity<?> init(@RequestBody Map<String, Object> request, @AuthenticationPrincipal User user) throws IOException {
+        Object fileSize = request.get("fileSize");
+        if (request.get("type") == null || request.get("fileName") == null || !(fileSize instanceof Number)) {
+            return ResponseEntity.badRequest().body("type, fileName and fileSize are required");
+        }
+        try {
+            ChunkUploadSession session = chunkUploadService.init(user.getId(), request.get("type").toString(),
+                    request.get("fileName").toString(), ((Number) fileSize).longValue(),
+                    request.get("sha256") != null ? request.get("sha256").toString() : null);
+            return ResponseEntity.ok(session);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            // 未完成的上传过多，需先完成或取消已有会话
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
+    }
+
+    // 上传分片，请求体为分片原始字节，可选 X-Chunk-Sha256 头校验分片内容
+    @PutMapping("/{uploadId}/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+                                         @RequestHeader(value = "X-Chunk-Sha256", required = false) String sha256,
+                                         @AuthenticationPrincipal User user, HttpServletRequest request) throws IOException {
+        Optional<ChunkUploadSession> session = chunkUploadService.getSession(uploadId);
+        if (session.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!session.get().getUserId().equals(user.getId())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        try {
+            chunkUploadService.writeChunk(session.get(), index, request.getInputStream(), sha256);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 查询上传进度（断点续传时使用）
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getStatus(@PathVariable String uploadId, @AuthenticationPrincipal User user) throws IOException {
+        Optional<ChunkUploadSession> session = chunkUploadService.getSession(uploadId);
+        if (session.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!session.get().getUserId().equals(user.getId())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        Map<String, Object> status = new HashMap<>();
+        status.put("session", session.get());
+        status.put("uploadedChunks", chunkUploadService.getUploadedChunks(session.get()));
+        return ResponseEntity.ok(status);
+    }
+
+    // 合并完成，图片和视频返回访问URL；音乐请使用 /music/upload/chunked 创建歌曲
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String uploadId, @AuthenticationPrincipal User user) throws IOException {
+        Optional<ChunkUploadSession> session = chunkUploadService.getSession(uploadId);
+        if (session.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!session.get().getUserId().equals(user.getId())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        try {
+            String fileName = chunkUploadService.complete(session.get());
+            Map<String, Object> result = new HashMap<>();
+            result.put("fileName", fileName);
+            if ("image".equals(session.get().getType())) {
+                imageVariantService.generateAsync("image", fileName);
+                result.put("url", imageAccessUrl + fileName);
+            } else if ("cover".equals(session.get().getType())) {
+                imageVariantService.generateAsync("cover", fileName);
+            } else if ("video".equals(session.get().getType())) {
+                result.put("url", videoAccessUrl + fileName);
+            }
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 取消上传
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable String uploadId, @AuthenticationPrincipal User user) throws IOException {
+        Optional<ChunkUploadSession> session = chunkUploadService.getSession(uploadId);
+        if (session.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!session.get().getUserId().equals(user.getId())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        chunkUploadService.abort(session.get());
+        return ResponseEntity.noContent().build();
+    }
+}
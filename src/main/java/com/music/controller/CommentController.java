@@ -16,7 +16,6 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
-import java.util.stream.Collectors;
 import com.music.dto.CommentDTO;
 
 @RestController
@@ -39,7 +38,7 @@ public class CommentController {
         comment.setUser(user);
         Comment createdComment = commentService.createComment(comment);
         postRepository.incrementCommentCount(dto.getPostId());
-        return new ResponseEntity<>(CommentDTO.fromComment(createdComment), HttpStatus.CREATED);
+        return new ResponseEntity<>(commentService.toDTO(createdComment), HttpStatus.CREATED);
     }
     
     @PostMapping("/music/{musicId}")
@@ -51,7 +50,7 @@ public class CommentController {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
         Comment createdComment = commentService.createMusicComment(musicId, content, user);
-        return new ResponseEntity<>(CommentDTO.fromComment(createdComment), HttpStatus.CREATED);
+        return new ResponseEntity<>(commentService.toDTO(createdComment), HttpStatus.CREATED);
     }
     
     @PutMapping("/{id}")
@@ -89,29 +88,27 @@ public class CommentController {
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<CommentDTO> getCommentById(@PathVariable Long id) {
+    public ResponseEntity<CommentDTO> getCommentById(@PathVariable Long id, @AuthenticationPrincipal User user) {
         Optional<Comment> comment = commentService.getCommentById(id);
-        return comment.map(c -> ResponseEntity.ok(CommentDTO.fromComment(c))).orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+        return comment.map(c -> ResponseEntity.ok(commentService.toDTOs(List.of(c), user != null ? user.getId() : null).get(0)))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
     
     @GetMapping("/post/{postId}")
-    public ResponseEntity<List<CommentDTO>> getCommentsByPostId(@PathVariable Long postId) {
-        List<CommentDTO> dtos = commentService.getCommentsByPostId(postId).stream()
-                .map(CommentDTO::fromComment).collect(Collectors.toList());
+    public ResponseEntity<List<CommentDTO>> getCommentsByPostId(@PathVariable Long postId, @AuthenticationPrincipal User user) {
+        List<CommentDTO> dtos = commentService.toDTOs(commentService.getCommentsByPostId(postId), user != null ? user.getId() : null);
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
     
     @GetMapping("/music/{musicId}")
-    public ResponseEntity<List<CommentDTO>> getCommentsByMusicId(@PathVariable Long musicId) {
-        List<CommentDTO> dtos = commentService.getCommentsByMusicId(musicId).stream()
-                .map(CommentDTO::fromComment).collect(Collectors.toList());
+    public ResponseEntity<List<CommentDTO>> getCommentsByMusicId(@PathVariable Long musicId, @AuthenticationPrincipal User user) {
+        List<CommentDTO> dtos = commentService.toDTOs(commentService.getCommentsByMusicId(musicId), user != null ? user.getId() : null);
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
     
     @GetMapping("/replies/{parentCommentId}")
-    public ResponseEntity<List<CommentDTO>> getRepliesByParentCommentId(@PathVariable Long parentCommentId) {
-        List<CommentDTO> dtos = commentService.getRepliesByParentCommentId(parentCommentId).stream()
-                .map(CommentDTO::fromComment).collect(Collectors.toList());
+    public ResponseEntity<List<CommentDTO>> getRepliesByParentCommentId(@PathVariable Long parentCommentId, @AuthenticationPrincipal User user) {
+        List<CommentDTO> dtos = commentService.toDTOs(commentService.getRepliesByParentCommentId(parentCommentId), user != null ? user.getId() : null);
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
     
@@ -142,6 +139,6 @@ public class CommentController {
         }
         
         Comment createdReply = commentService.createComment(reply);
-        return new ResponseEntity<>(CommentDTO.fromComment(createdReply), HttpStatus.CREATED);
+        return new ResponseEntity<>(commentService.toDTO(createdReply), HttpStatus.CREATED);
     }
 }
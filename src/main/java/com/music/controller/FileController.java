@@ -1,15 +1,24 @@
 package com.music.controller;
 
+import com.music.service.ImageVariantService;
 import com.music.util.FileUploadUtil;
+import com.music.util.MediaStreamUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,6 +30,12 @@ public class FileController {
     @Autowired
     private FileUploadUtil fileUploadUtil;
 
+    @Autowired
+    private MediaStreamUtil mediaStreamUtil;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
     // 上传图片
     @PostMapping("/upload/image")
     public ResponseEntity<Map<String, String>> uploadImage(@RequestParam("file") MultipartFile file) {
@@ -28,6 +43,7 @@ public class FileController {
         
         try {
             String fileName = fileUploadUtil.uploadImageFile(file);
+            imageVariantService.generateAsync("image", fileName);
             response.put("success", "true");
             response.put("message", "图片上传成功");
             response.put("url", "/api/files/image/" + fileName);
@@ -57,39 +73,49 @@ public class FileController {
         }
     }
 
-    // 获取图片
-    @org.springframework.web.bind.annotation.GetMapping("/image/{filename}")
-    public org.springframework.http.ResponseEntity<org.springframework.core.io.Resource> getImage(@org.springframework.web.bind.annotation.PathVariable String filename) {
-        try {
-            java.io.File file = new java.io.File(fileUploadUtil.getImageFilePath(filename));
-            if (!file.exists()) {
-                return org.springframework.http.ResponseEntity.notFound().build();
-            }
-            
-            org.springframework.core.io.Resource resource = new org.springframework.core.io.FileSystemResource(file);
-            return org.springframework.http.ResponseEntity.ok()
-                    .contentType(org.springframework.http.MediaType.IMAGE_JPEG)
-                    .body(resource);
-        } catch (Exception e) {
-            return org.springframework.http.ResponseEntity.internalServerError().build();
+    // 获取图片，size 为需要的宽度（像素），返回不小于该宽度的最接近的缩略图
+    @GetMapping("/image/{filename}")
+    public void getImage(@PathVariable String filename, @RequestParam(required = false) Integer size,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeImage(filename, new File(fileUploadUtil.getImageFilePath(filename)), size, request, response);
+    }
+
+    // 获取封面（内容寻址的文件分目录存放，不能再由静态资源映射直接访问）
+    @GetMapping("/cover/{filename}")
+    public void getCover(@PathVariable String filename, @RequestParam(required = false) Integer size,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeImage(filename, new File(fileUploadUtil.getCoverFilePath(filename)), size, request, response);
+    }
+
+    // 获取头像
+    @GetMapping("/avatar/{filename}")
+    public void getAvatar(@PathVariable String filename, @RequestParam(required = false) Integer size,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeImage(filename, new File(fileUploadUtil.getAvatarFilePath(filename)), size, request, response);
+    }
+
+    private void writeImage(String filename, File file, Integer size,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!file.exists()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
+        File image = imageVariantService.getVariant(file, size);
+        // 缩略图暂未生成时临时返回的原图不能长期缓存，否则浏览器会一直使用大图
+        CacheControl cacheControl = size != null && image.equals(file)
+                ? mediaStreamUtil.getDefaultCacheControl() : mediaStreamUtil.getCacheControl(filename);
+        mediaStreamUtil.writeFile(request, response, image,
+                mediaStreamUtil.getContentType(image, MediaType.IMAGE_JPEG_VALUE), null, false, cacheControl);
     }
 
-    // 获取视频
-    @org.springframework.web.bind.annotation.GetMapping("/video/{filename}")
-    public org.springframework.http.ResponseEntity<org.springframework.core.io.Resource> getVideo(@org.springframework.web.bind.annotation.PathVariable String filename) {
-        try {
-            java.io.File file = new java.io.File(fileUploadUtil.getVideoFilePath(filename));
-            if (!file.exists()) {
-                return org.springframework.http.ResponseEntity.notFound().build();
-            }
-            
-            org.springframework.core.io.Resource resource = new org.springframework.core.io.FileSystemResource(file);
-            return org.springframework.http.ResponseEntity.ok()
-                    .contentType(org.springframework.http.MediaType.parseMediaType("video/mp4"))
-                    .body(resource);
-        } catch (Exception e) {
-            return org.springframework.http.ResponseEntity.internalServerError().build();
+    // 获取视频（支持 Range 拖动进度，开放式 Range 分段返回）
+    @GetMapping("/video/{filename}")
+    public void getVideo(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File file = new File(fileUploadUtil.getVideoFilePath(filename));
+        if (!file.exists()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
+        mediaStreamUtil.writeVideo(request, response, file, mediaStreamUtil.getCacheControl(filename));
     }
 }
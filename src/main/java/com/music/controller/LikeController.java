@@ -8,12 +8,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/likes")
 public class LikeController {
+    // 批量查询点赞状态时单次请求的最大ID数
+    private static final int MAX_BATCH_IDS = 200;
+
     @Autowired
     private LikeService likeService;
     
@@ -33,6 +40,37 @@ public class LikeController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
     
+    // 明确设置/取消点赞（幂等，重复提交与重试不会改变结果），POST 切换接口保留兼容
+    @PutMapping("/post/{postId}")
+    public ResponseEntity<Map<String, Boolean>> likePost(@PathVariable Long postId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setPostLike(user, postId, true));
+    }
+    
+    @DeleteMapping("/post/{postId}")
+    public ResponseEntity<Map<String, Boolean>> unlikePost(@PathVariable Long postId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setPostLike(user, postId, false));
+    }
+    
+    @PutMapping("/comment/{commentId}")
+    public ResponseEntity<Map<String, Boolean>> likeComment(@PathVariable Long commentId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setCommentLike(user, commentId, true));
+    }
+    
+    @DeleteMapping("/comment/{commentId}")
+    public ResponseEntity<Map<String, Boolean>> unlikeComment(@PathVariable Long commentId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setCommentLike(user, commentId, false));
+    }
+    
+    @PutMapping("/music/{musicId}")
+    public ResponseEntity<Map<String, Boolean>> likeMusic(@PathVariable Long musicId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setMusicLike(user, musicId, true));
+    }
+    
+    @DeleteMapping("/music/{musicId}")
+    public ResponseEntity<Map<String, Boolean>> unlikeMusic(@PathVariable Long musicId, @AuthenticationPrincipal User user) {
+        return likedResponse(likeService.setMusicLike(user, musicId, false));
+    }
+    
     @GetMapping("/post/{postId}/status")
     public ResponseEntity<Map<String, Boolean>> getPostLikeStatus(@PathVariable Long postId, @AuthenticationPrincipal User user) {
         boolean isLiked = likeService.isPostLikedByUser(user.getId(), postId);
@@ -64,4 +102,45 @@ public class LikeController {
         response.put("liked", isLiked);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
+    
+    // 批量查询点赞状态（列表页一次请求代替逐条查询），如 /likes/post/status?ids=1,2,3，返回 {id: 是否点赞}
+    @GetMapping("/post/status")
+    public ResponseEntity<Map<Long, Boolean>> getPostLikeStatuses(@RequestParam List<Long> ids, @AuthenticationPrincipal User user) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(toStatusMap(ids, likeService.getLikedPostIds(user.getId(), ids)), HttpStatus.OK);
+    }
+    
+    @GetMapping("/comment/status")
+    public ResponseEntity<Map<Long, Boolean>> getCommentLikeStatuses(@RequestParam List<Long> ids, @AuthenticationPrincipal User user) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(toStatusMap(ids, likeService.getLikedCommentIds(user.getId(), ids)), HttpStatus.OK);
+    }
+    
+    @GetMapping("/music/status")
+    public ResponseEntity<Map<Long, Boolean>> getMusicLikeStatuses(@RequestParam List<Long> ids, @AuthenticationPrincipal User user) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(toStatusMap(ids, likeService.getLikedMusicIds(user.getId(), ids)), HttpStatus.OK);
+    }
+    
+    private ResponseEntity<Map<String, Boolean>> likedResponse(boolean liked) {
+        Map<String, Boolean> response = new HashMap<>();
+        response.put("liked", liked);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+    
+    private Map<Long, Boolean> toStatusMap(Collection<Long> ids, Set<Long> likedIds) {
+        Map<Long, Boolean> response = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (id != null) {
+                response.put(id, likedIds.contains(id));
+            }
+        }
+        return response;
+    }
 }
@@ -0,0 +1,123 @@
+package com.music.controller;
+
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.PlayEventService;
+import com.music.service.PreviewService;
+import com.music.service.StorageTierService;
+import com.music.util.FileUploadUtil;
+import com.music.util.MediaStreamUtil;
+import com.music.util.MediaUrlSigner;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+// 签名媒体地址：只校验签名并输出文件，不经过 JWT 认证、不查询数据库（地址由歌曲详情接口签发）
+@RestController
+@RequestMapping("/media")
+public class MediaController {
+    @Autowired
+    private MediaUrlSigner mediaUrlSigner;
+
+    @Autowired
+    private MediaStreamUtil mediaStreamUtil;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private PlayEventService playEventService;
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    // 播放音乐，与 /music/play/{id} 一样只有从头开始的请求才计一次播放
+    @GetMapping("/music/{fileName}")
+    public void playMusic(@PathVariable String fileName,
+                          @RequestParam(value = "m", required = false) Long musicId,
+                          @RequestParam(value = "u", required = false) Long userId,
+                          @RequestParam(value = "d", required = false) Integer duration,
+                          @RequestParam("e") long expiry, @RequestParam("s") String signature,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!mediaUrlSigner.verify("music", fileName, musicId, userId, duration, expiry, signature)) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        File musicFile = storageTierService.getMusicFile(fileName);
+        if (!musicFile.isFile()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        mediaStreamUtil.writeFile(request, response, musicFile, "audio/mpeg", null, false, cacheControl(expiry), () -> {
+            if (musicId != null) {
+                playEventService.recordPlay(musicId, userId, duration);
+                hotTrackCache.recordPlay(musicFile);
+            }
+        });
+    }
+
+    // 试听片段
+    @GetMapping("/preview/{fileName}")
+    public void previewMusic(@PathVariable String fileName,
+                             @RequestParam("e") long expiry, @RequestParam("s") String signature,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!mediaUrlSigner.verify("preview", fileName, null, null, null, expiry, signature)) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        File musicFile = storageTierService.getMusicFile(fileName);
+        Optional<File> preview = musicFile.isFile() ? previewService.getPreview(musicFile) : Optional.empty();
+        if (preview.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        mediaStreamUtil.writeFile(request, response, preview.get(), "audio/mpeg", null, false, cacheControl(expiry));
+    }
+
+    // 封面，size 含义同 /files/cover
+    @GetMapping("/cover/{fileName}")
+    public void getCover(@PathVariable String fileName, @RequestParam(required = false) Integer size,
+                         @RequestParam("e") long expiry, @RequestParam("s") String signature,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!mediaUrlSigner.verify("cover", fileName, null, null, null, expiry, signature)) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        File coverFile = new File(fileUploadUtil.getCoverFilePath(fileName));
+        if (!coverFile.isFile()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        File image = imageVariantService.getVariant(coverFile, size);
+        mediaStreamUtil.writeFile(request, response, image,
+                mediaStreamUtil.getContentType(image, MediaType.IMAGE_JPEG_VALUE), null, false, cacheControl(expiry));
+    }
+
+    // 缓存时间不超过签名剩余有效期
+    private CacheControl cacheControl(long expiry) {
+        long remaining = Math.max(0, expiry - System.currentTimeMillis() / 1000);
+        return CacheControl.maxAge(Duration.ofSeconds(remaining)).cachePublic();
+    }
+}
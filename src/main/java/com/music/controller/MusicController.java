@@ -1,15 +1,30 @@
 package com.music.controller;
 
+import com.music.dto.ChunkUploadSession;
+import com.music.dto.MusicDetailDTO;
 import com.music.entity.Music;
+import com.music.entity.User;
+import com.music.service.BandwidthLimiter;
+import com.music.service.ChunkUploadService;
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.LikeService;
+import com.music.service.LoudnessService;
 import com.music.service.MusicService;
+import com.music.service.PlayEventService;
+import com.music.service.PreviewService;
+import com.music.service.WaveformService;
+import com.music.util.MediaStreamUtil;
+import com.music.util.MediaUrlSigner;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,6 +39,32 @@ public class MusicController {
     @Autowired
     private MusicService musicService;
 
+    @Autowired
+    private MediaStreamUtil mediaStreamUtil;
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private BandwidthLimiter bandwidthLimiter;
+
+    @Autowired
+    private WaveformService waveformService;
+
+    @Autowired
+    private LoudnessService loudnessService;
+
+    @Autowired
+    private LikeService likeService;
+
+    private static final int DOWNLOAD_RETRY_AFTER_SECONDS = 5;
+
     // 上传音乐(仅音乐人)
     @PostMapping("/upload")
     @PreAuthorize("hasRole('MUSICIAN')")
@@ -39,6 +80,32 @@ public class MusicController {
         }
     }
 
+    // 上传音乐（音乐文件已通过 /upload/chunked 分片上传，仅音乐人）
+    @PostMapping("/upload/chunked")
+    @PreAuthorize("hasRole('MUSICIAN')")
+    public ResponseEntity<?> uploadChunkedMusic(
+            @RequestPart("music") Music music,
+            @RequestParam("uploadId") String uploadId,
+            @RequestPart(value = "coverFile", required = false) MultipartFile coverFile,
+            @AuthenticationPrincipal User user) {
+        Optional<ChunkUploadSession> session = chunkUploadService.getSession(uploadId);
+        if (session.isEmpty() || !"music".equals(session.get().getType())) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!session.get().getUserId().equals(user.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            String musicFilePath = chunkUploadService.complete(session.get());
+            Music uploadedMusic = musicService.uploadMusic(music, musicFilePath, coverFile);
+            return ResponseEntity.ok(uploadedMusic);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File upload failed: " + e.getMessage());
+        }
+    }
+
     // 获取音乐列表
     @GetMapping("/list")
     public ResponseEntity<List<Music>> getMusicList() {
@@ -46,125 +113,174 @@ public class MusicController {
         return ResponseEntity.ok(musicList);
     }
 
-    // 根据ID获取音乐
+    @Autowired
+    private MediaUrlSigner mediaUrlSigner;
+
+    // 根据ID获取音乐，附带签名的媒体地址（播放、试听、封面请求不再经过认证和数据库）
     @GetMapping("/detail/{id}")
-    public ResponseEntity<?> getMusicDetail(@PathVariable Long id) {
-        Optional<Music> music = musicService.getMusicById(id);
-        return music.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<?> getMusicDetail(@PathVariable Long id, @AuthenticationPrincipal User user) {
+        Optional<Music> optionalMusic = musicService.getMusicById(id);
+        if (!optionalMusic.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Music music = optionalMusic.get();
+        long expiry = mediaUrlSigner.nextExpiry();
+        MusicDetailDTO detail = new MusicDetailDTO();
+        detail.setMusic(musicService.withPendingCounts(music));
+        if (music.getFilePath() != null) {
+            // 时长随地址签名，签名地址播放时与 /music/play 记录相同的播放时长
+            detail.setPlayUrl(mediaUrlSigner.sign("music", music.getFilePath(), music.getId(),
+                    user != null ? user.getId() : null, music.getDuration(), expiry));
+            detail.setPreviewUrl(mediaUrlSigner.sign("preview", music.getFilePath(), null, null, null, expiry));
+        }
+        if (music.getCoverPath() != null) {
+            detail.setCoverUrl(mediaUrlSigner.sign("cover", music.getCoverPath(), null, null, null, expiry));
+        }
+        detail.setMediaUrlExpireTime(expiry);
+        detail.setReplayGain(loudnessService.getReplayGain(music.getLoudness()));
+        if (user != null) {
+            // 详情页随歌曲一起返回收藏状态，不必再单独请求 /likes/music/{id}/status
+            detail.setLiked(likeService.isMusicLikedByUser(user.getId(), music.getId()));
+        }
+        return ResponseEntity.ok(detail);
     }
 
     @Autowired
-    private com.music.repository.PlayRecordRepository playRecordRepository;
+    private PlayEventService playEventService;
 
     @Autowired
-    private com.music.repository.UserRepository userRepository;
+    private HotTrackCache hotTrackCache;
 
-    // 播放音乐
+    // 播放音乐（支持 Range 断点续传与拖动进度）
     @GetMapping("/play/{id}")
-    public ResponseEntity<Resource> playMusic(@PathVariable Long id) {
+    public void playMusic(@PathVariable Long id, @AuthenticationPrincipal User user,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
         Optional<Music> optionalMusic = musicService.getMusicById(id);
         if (!optionalMusic.isPresent()) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
         Music music = optionalMusic.get();
         File musicFile = musicService.getMusicFile(music.getFilePath());
         if (!musicFile.exists()) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
-        // 更新播放量
-        musicService.updatePlayCount(id);
-        
-        // 记录播放历史 (如果用户已登录)
-        try {
-            org.springframework.security.core.Authentication auth = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getPrincipal())) {
-                String username = null;
-                if (auth.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-                    username = ((org.springframework.security.core.userdetails.UserDetails) auth.getPrincipal()).getUsername();
-                } else if (auth.getPrincipal() instanceof String) {
-                    username = (String) auth.getPrincipal();
-                }
-                
-                if (username != null) {
-                    java.util.Optional<com.music.entity.User> userOpt = userRepository.findByUsername(username);
-                    if (userOpt.isPresent()) {
-                        com.music.entity.PlayRecord record = new com.music.entity.PlayRecord();
-                        record.setUser(userOpt.get());
-                        record.setMusic(music);
-                        record.setPlayDuration(music.getDuration()); // 默认记录完整时长
-                        playRecordRepository.save(record);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 忽略记录失败，不影响播放
-            e.printStackTrace();
-        }
-
-        // 返回音乐文件
-        Resource resource = new FileSystemResource(musicFile);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + music.getTitle() + ".mp3\"");
-        headers.add(HttpHeaders.CONTENT_TYPE, "audio/mpeg");
-
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentLength(musicFile.length())
-                .body(resource);
+        // 返回音乐文件（单段 Range 返回 206）；只有从头开始输出内容的 GET 请求才算一次播放，
+        // 拖动进度、缓存重新校验（304）和 HEAD 请求不计数；播放量与播放历史异步批量落库，同时累加热度，热门歌曲会被载入内存缓存
+        mediaStreamUtil.writeFile(request, response, musicFile, "audio/mpeg", music.getTitle() + ".mp3", false,
+                mediaStreamUtil.getDefaultCacheControl(), () -> {
+                    playEventService.recordPlay(id, user != null ? user.getId() : null, music.getDuration());
+                    hotTrackCache.recordPlay(musicFile);
+                });
+    }
+
+    // 试听（帧对齐截取的片段，首次请求时生成并缓存；不计播放量、不写播放历史）
+    @GetMapping("/preview/{id}")
+    public void previewMusic(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Music> optionalMusic = musicService.getMusicById(id);
+        if (!optionalMusic.isPresent()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Music music = optionalMusic.get();
+        File musicFile = musicService.getMusicFile(music.getFilePath());
+        if (!musicFile.exists()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Optional<File> preview = previewService.getPreview(musicFile);
+        if (preview.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        mediaStreamUtil.writeFile(request, response, preview.get(), "audio/mpeg", music.getTitle() + "-preview.mp3");
+    }
+
+    // 波形（峰值）数据，points 为需要的点数，返回不少于该点数的最接近精度；格式见 WaveformService
+    @GetMapping("/waveform/{id}")
+    public void getWaveform(@PathVariable Long id, @RequestParam(required = false) Integer points,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Music> optionalMusic = musicService.getMusicById(id);
+        if (!optionalMusic.isPresent()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        File musicFile = musicService.getMusicFile(optionalMusic.get().getFilePath());
+        if (!musicFile.exists()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Optional<File> peaks = waveformService.getPeaks(musicFile, points);
+        if (peaks.isEmpty()) {
+            // 仍在生成（或无法解码），客户端稍后重试
+            response.setHeader(HttpHeaders.RETRY_AFTER, "10");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        mediaStreamUtil.writeFile(request, response, peaks.get(), MediaType.APPLICATION_OCTET_STREAM_VALUE, null);
     }
 
     // 下载音乐
     @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadMusic(@PathVariable Long id) {
+    public void downloadMusic(@PathVariable Long id, @AuthenticationPrincipal User user,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
         Optional<Music> optionalMusic = musicService.getMusicById(id);
         if (!optionalMusic.isPresent()) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
         Music music = optionalMusic.get();
         File musicFile = musicService.getMusicFile(music.getFilePath());
         if (!musicFile.exists()) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
-        // 更新下载量
-        musicService.updateDownloadCount(id);
-
-        // 返回音乐文件
-        Resource resource = new FileSystemResource(musicFile);
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + music.getTitle() + ".mp3\"");
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        // 同一用户/IP 同时进行的下载数超过上限时拒绝，客户端稍后重试
+        Optional<BandwidthLimiter.Lease> lease = bandwidthLimiter.acquire(user != null ? user.getId() : null,
+                request.getRemoteAddr(), musicFile.length());
+        if (lease.isEmpty()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(DOWNLOAD_RETRY_AFTER_SECONDS));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentLength(musicFile.length())
-                .body(resource);
+        try (BandwidthLimiter.Lease downloadLease = lease.get()) {
+            // 返回音乐文件（按用户/IP 限速）；更新下载量（断点续传的后续分段、304 和 HEAD 请求不计数）
+            mediaStreamUtil.writeDownload(request, response, musicFile, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                    music.getTitle() + ".mp3", downloadLease, () -> musicService.updateDownloadCount(id));
+        }
     }
 
-    // 获取封面图片
+    // 获取封面图片，size 为需要的宽度（像素），返回不小于该宽度的最接近的缩略图
     @GetMapping("/cover/{id}")
-    public ResponseEntity<Resource> getCoverImage(@PathVariable Long id) {
+    public void getCoverImage(@PathVariable Long id, @RequestParam(required = false) Integer size,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
         Optional<Music> optionalMusic = musicService.getMusicById(id);
         if (!optionalMusic.isPresent() || optionalMusic.get().getCoverPath() == null) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
 
         Music music = optionalMusic.get();
         File coverFile = musicService.getCoverFile(music.getCoverPath());
         if (!coverFile.exists()) {
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
+        coverFile = imageVariantService.getVariant(coverFile, size);
 
-        Resource resource = new FileSystemResource(coverFile);
-        java.util.Optional<MediaType> mediaType = org.springframework.http.MediaTypeFactory.getMediaType(coverFile.getName());
-        return ResponseEntity.ok()
-                .contentType(mediaType.orElse(MediaType.APPLICATION_OCTET_STREAM))
-                .contentLength(coverFile.length())
-                .body(resource);
+        mediaStreamUtil.writeFile(request, response, coverFile,
+                mediaStreamUtil.getContentType(coverFile, MediaType.APPLICATION_OCTET_STREAM_VALUE), null);
     }
 
     // 搜索音乐
@@ -47,7 +47,7 @@ public class PlaylistController {
     @GetMapping("/{id}")
     public ResponseEntity<PlaylistDTO> getPlaylistById(@PathVariable Long id) {
         Optional<Playlist> playlist = playlistService.getPlaylistById(id);
-        return playlist.map(p -> ResponseEntity.ok(PlaylistDTO.fromPlaylist(p)))
+        return playlist.map(p -> ResponseEntity.ok(playlistService.toDTO(p)))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
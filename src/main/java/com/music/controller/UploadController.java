@@ -1,5 +1,8 @@
 package com.music.controller;
 
+import com.music.service.ImageVariantService;
+import com.music.util.FileUploadUtil;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,20 +12,18 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/upload")
 public class UploadController {
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
 
     @Value("${file.upload.image.path}")
     private String imageUploadPath;
@@ -43,8 +44,9 @@ public class UploadController {
         
         for (MultipartFile file : files) {
             if (!file.isEmpty()) {
-                String imageUrl = saveFile(file, imageUploadPath, imageAccessUrl);
-                imageUrls.add(imageUrl);
+                String filename = fileUploadUtil.uploadFile(file, imageUploadPath);
+                imageVariantService.generateAsync("image", filename);
+                imageUrls.add(imageAccessUrl + filename);
             }
         }
         
@@ -62,24 +64,9 @@ public class UploadController {
         return new ResponseEntity<>(videoUrl, HttpStatus.OK);
     }
 
-    // 保存文件到本地并返回访问URL
+    // 保存文件到内容寻址存储并返回访问URL
     private String saveFile(MultipartFile file, String uploadPath, String accessUrl) throws IOException {
-        // 确保上传目录存在
-        File uploadDir = new File(uploadPath);
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
-        }
-
-        // 生成唯一的文件名
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename != null ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
-
-        // 保存文件
-        Path filePath = Paths.get(uploadPath, uniqueFilename);
-        Files.write(filePath, file.getBytes());
-
-        // 返回文件访问URL
-        return accessUrl + uniqueFilename;
+        String filename = fileUploadUtil.uploadFile(file, uploadPath);
+        return accessUrl + filename;
     }
-}
\ No newline at end of file
+}
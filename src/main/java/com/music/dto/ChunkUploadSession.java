@@ -0,0 +1,102 @@
+package com.music.dto;
+
+// 分片上传会话（持久化为临时目录下的 session.json，服务重启后可继续上传）
+public class ChunkUploadSession {
+    private String uploadId;
+    private Long userId;
+    private String type; // music / cover / image / video
+    private String fileName;
+    private String extension;
+    private long fileSize;
+    private int chunkSize;
+    private int chunkCount;
+    private String sha256; // 可选，整个文件的 SHA-256，合并时校验
+    private long createTime;
+
+    // 第 index 个分片的期望长度（最后一片可能不足 chunkSize）
+    public long getChunkLength(int index) {
+        long offset = (long) index * chunkSize;
+        return Math.min(chunkSize, fileSize - offset);
+    }
+
+    // 手动实现getter/setter方法
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(long createTime) {
+        this.createTime = createTime;
+    }
+}
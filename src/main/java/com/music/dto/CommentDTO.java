@@ -10,6 +10,7 @@ public class CommentDTO {
     private Long id;
     private String content;
     private int likeCount;
+    private boolean liked; // 当前用户是否点赞（未登录时为 false）
     
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createTime;
@@ -42,6 +43,14 @@ public class CommentDTO {
         this.likeCount = likeCount;
     }
 
+    public boolean isLiked() {
+        return liked;
+    }
+
+    public void setLiked(boolean liked) {
+        this.liked = liked;
+    }
+
     public LocalDateTime getCreateTime() {
         return createTime;
     }
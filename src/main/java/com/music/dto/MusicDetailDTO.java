@@ -0,0 +1,76 @@
+package com.music.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.music.entity.Music;
+
+// 歌曲详情：歌曲字段平铺输出（与原先直接返回 Music 的结构兼容），附带签名的播放、试听与封面地址及回放增益
+public class MusicDetailDTO {
+    @JsonUnwrapped
+    private Music music;
+    private String playUrl;
+    private String previewUrl;
+    private String coverUrl;
+    // 签名地址的过期时间（秒级时间戳），过期后重新请求详情获取新地址
+    private Long mediaUrlExpireTime;
+    // 回放增益（dB）：播放时按此值调整音量即可达到统一响度，响度尚未分析时为空
+    private Double replayGain;
+    // 当前用户是否收藏，未登录时为空
+    private Boolean liked;
+
+    // 手动实现getter/setter方法
+    public Music getMusic() {
+        return music;
+    }
+
+    public void setMusic(Music music) {
+        this.music = music;
+    }
+
+    public String getPlayUrl() {
+        return playUrl;
+    }
+
+    public void setPlayUrl(String playUrl) {
+        this.playUrl = playUrl;
+    }
+
+    public String getPreviewUrl() {
+        return previewUrl;
+    }
+
+    public void setPreviewUrl(String previewUrl) {
+        this.previewUrl = previewUrl;
+    }
+
+    public String getCoverUrl() {
+        return coverUrl;
+    }
+
+    public void setCoverUrl(String coverUrl) {
+        this.coverUrl = coverUrl;
+    }
+
+    public Long getMediaUrlExpireTime() {
+        return mediaUrlExpireTime;
+    }
+
+    public void setMediaUrlExpireTime(Long mediaUrlExpireTime) {
+        this.mediaUrlExpireTime = mediaUrlExpireTime;
+    }
+
+    public Double getReplayGain() {
+        return replayGain;
+    }
+
+    public void setReplayGain(Double replayGain) {
+        this.replayGain = replayGain;
+    }
+
+    public Boolean getLiked() {
+        return liked;
+    }
+
+    public void setLiked(Boolean liked) {
+        this.liked = liked;
+    }
+}
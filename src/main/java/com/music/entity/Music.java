@@ -56,6 +56,12 @@ public class Music {
 
     private Integer status;
 
+    // 积分响度（EBU R128，LUFS），后台分析完成前为空
+    private Double loudness;
+
+    // 采样峰值（线性，1.0 为满幅度）
+    private Double loudnessPeak;
+
     @CreationTimestamp
     private Date createTime;
 
@@ -214,6 +220,22 @@ public class Music {
         this.status = status;
     }
 
+    public Double getLoudness() {
+        return loudness;
+    }
+
+    public void setLoudness(Double loudness) {
+        this.loudness = loudness;
+    }
+
+    public Double getLoudnessPeak() {
+        return loudnessPeak;
+    }
+
+    public void setLoudnessPeak(Double loudnessPeak) {
+        this.loudnessPeak = loudnessPeak;
+    }
+
     public Date getCreateTime() {
         return createTime;
     }
@@ -2,10 +2,34 @@ package com.music.repository;
 
 import com.music.entity.CommentLike;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CommentLikeRepository extends JpaRepository<CommentLike, Long> {
     Optional<CommentLike> findByUserIdAndCommentId(Long userId, Long commentId);
     int countByCommentId(Long commentId);
     boolean existsByUserIdAndCommentId(Long userId, Long commentId);
+
+    // 用户在给定评论中点过赞的评论ID（一次 IN 查询）
+    @Query("SELECT cl.comment.id FROM CommentLike cl WHERE cl.user.id = :userId AND cl.comment.id IN :commentIds")
+    List<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") Collection<Long> commentIds);
+
+    // 用户点赞过的全部评论ID（加载点赞集合缓存）
+    @Query("SELECT cl.comment.id FROM CommentLike cl WHERE cl.user.id = :userId")
+    List<Long> findCommentIdsByUserId(@Param("userId") Long userId);
+
+    // 点赞：依赖 (user_id, comment_id) 唯一索引，已点赞时不插入，返回实际插入的行数（0 或 1）
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO comment_likes (user_id, comment_id, created_at) VALUES (:userId, :commentId, NOW())", nativeQuery = true)
+    int insertLike(@Param("userId") Long userId, @Param("commentId") Long commentId);
+
+    // 取消点赞，返回实际删除的行数（未点赞时为 0）
+    @Modifying
+    @Query(value = "DELETE FROM comment_likes WHERE user_id = :userId AND comment_id = :commentId", nativeQuery = true)
+    int deleteLike(@Param("userId") Long userId, @Param("commentId") Long commentId);
 }
@@ -0,0 +1,43 @@
+package com.music.repository;
+
+import com.music.entity.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+    Optional<MediaBlob> findByStoreAndFileName(String store, String fileName);
+
+    // 增加一次引用，记录不存在时新建（引用计数为1）
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO media_blob (store, file_name, file_size, ref_count) VALUES (:store, :fileName, :fileSize, 1) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    void acquire(@Param("store") String store, @Param("fileName") String fileName, @Param("fileSize") long fileSize);
+
+    // 减少一次引用，返回受影响行数（0 表示没有引用记录）
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE media_blob SET ref_count = ref_count - 1 WHERE store = :store AND file_name = :fileName AND ref_count > 0",
+            nativeQuery = true)
+    int release(@Param("store") String store, @Param("fileName") String fileName);
+
+    // 引用计数归零时删除记录，返回 1 表示文件可以删除
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM media_blob WHERE store = :store AND file_name = :fileName AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("store") String store, @Param("fileName") String fileName);
+
+    // 删除在 idleBefore 之后没有变动过的记录（不看引用计数），供存储巡检清理孤儿文件
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM media_blob WHERE store = :store AND file_name = :fileName AND update_time < :idleBefore",
+            nativeQuery = true)
+    int deleteIfIdleBefore(@Param("store") String store, @Param("fileName") String fileName,
+                           @Param("idleBefore") LocalDateTime idleBefore);
+}
@@ -2,8 +2,13 @@ package com.music.repository;
 
 import com.music.entity.MusicLike;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +18,22 @@ public interface MusicLikeRepository extends JpaRepository<MusicLike, Long> {
     long countByUserId(Long userId);
     boolean existsByUserIdAndMusicId(Long userId, Long musicId);
     void deleteByUserId(Long userId);
+
+    // 用户在给定歌曲中收藏过的歌曲ID（一次 IN 查询）
+    @Query("SELECT ml.music.id FROM MusicLike ml WHERE ml.user.id = :userId AND ml.music.id IN :musicIds")
+    List<Long> findLikedMusicIds(@Param("userId") Long userId, @Param("musicIds") Collection<Long> musicIds);
+
+    // 用户收藏过的全部歌曲ID（加载点赞集合缓存）
+    @Query("SELECT ml.music.id FROM MusicLike ml WHERE ml.user.id = :userId")
+    List<Long> findMusicIdsByUserId(@Param("userId") Long userId);
+
+    // 收藏：依赖 (user_id, music_id) 唯一索引，已收藏时不插入，返回实际插入的行数（0 或 1）
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO music_likes (user_id, music_id, created_at) VALUES (:userId, :musicId, NOW())", nativeQuery = true)
+    int insertLike(@Param("userId") Long userId, @Param("musicId") Long musicId);
+
+    // 取消收藏，返回实际删除的行数（未收藏时为 0）
+    @Modifying
+    @Query(value = "DELETE FROM music_likes WHERE user_id = :userId AND music_id = :musicId", nativeQuery = true)
+    int deleteLike(@Param("userId") Long userId, @Param("musicId") Long musicId);
 }
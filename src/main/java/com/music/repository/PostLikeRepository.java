@@ -2,10 +2,34 @@ package com.music.repository;
 
 import com.music.entity.PostLike;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PostLikeRepository extends JpaRepository<PostLike, Long> {
     Optional<PostLike> findByUserIdAndPostId(Long userId, Long postId);
     int countByPostId(Long postId);
     boolean existsByUserIdAndPostId(Long userId, Long postId);
+
+    // 用户在给定动态中点过赞的动态ID（一次 IN 查询）
+    @Query("SELECT pl.post.id FROM PostLike pl WHERE pl.user.id = :userId AND pl.post.id IN :postIds")
+    List<Long> findLikedPostIds(@Param("userId") Long userId, @Param("postIds") Collection<Long> postIds);
+
+    // 用户点赞过的全部动态ID（加载点赞集合缓存）
+    @Query("SELECT pl.post.id FROM PostLike pl WHERE pl.user.id = :userId")
+    List<Long> findPostIdsByUserId(@Param("userId") Long userId);
+
+    // 点赞：依赖 (user_id, post_id) 唯一索引，已点赞时不插入，返回实际插入的行数（0 或 1）
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO post_likes (user_id, post_id, created_at) VALUES (:userId, :postId, NOW())", nativeQuery = true)
+    int insertLike(@Param("userId") Long userId, @Param("postId") Long postId);
+
+    // 取消点赞，返回实际删除的行数（未点赞时为 0）
+    @Modifying
+    @Query(value = "DELETE FROM post_likes WHERE user_id = :userId AND post_id = :postId", nativeQuery = true)
+    int deleteLike(@Param("userId") Long userId, @Param("postId") Long postId);
 }
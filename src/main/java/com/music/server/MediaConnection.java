@@ -0,0 +1,165 @@
+package com.music.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// 媒体服务器的单个连接（只在所属事件循环线程中访问），文件用 transferTo 零拷贝输出
+@Slf4j
+class MediaConnection {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final MediaRequestHandler handler;
+    private final ByteBuffer in;
+
+    private ByteBuffer head;
+    private ByteBuffer body;
+    private FileChannel file;
+    private long position;
+    private long remaining;
+    private boolean keepAlive;
+    private long lastActive = System.currentTimeMillis();
+
+    MediaConnection(SocketChannel channel, SelectionKey key, MediaRequestHandler handler, int maxHeaderSize) {
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+        this.in = ByteBuffer.allocate(maxHeaderSize);
+    }
+
+    long getLastActive() {
+        return lastActive;
+    }
+
+    void onReadable() throws IOException {
+        int read = channel.read(in);
+        if (read < 0) {
+            close();
+            return;
+        }
+        lastActive = System.currentTimeMillis();
+        processRequest();
+    }
+
+    void onWritable() throws IOException {
+        lastActive = System.currentTimeMillis();
+        if (head.hasRemaining()) {
+            channel.write(head);
+            if (head.hasRemaining()) {
+                return;
+            }
+        }
+        if (body != null) {
+            channel.write(body);
+            if (body.hasRemaining()) {
+                return;
+            }
+        }
+        while (file != null && remaining > 0) {
+            long written = file.transferTo(position, remaining, channel);
+            if (written <= 0) {
+                return;
+            }
+            position += written;
+            remaining -= written;
+        }
+        finishResponse();
+    }
+
+    // 缓冲区中有完整请求头时生成响应并开始写出
+    private void processRequest() throws IOException {
+        int end = findHeadEnd();
+        if (end < 0) {
+            if (!in.hasRemaining()) {
+                respond(MediaResponse.error(431, "Request Header Fields Too Large"), false);
+            }
+            return;
+        }
+        String text = new String(in.array(), 0, end, StandardCharsets.ISO_8859_1);
+        // 保留请求头之后的数据（流水线请求）
+        in.flip();
+        in.position(end + 4);
+        in.compact();
+
+        MediaResponse response;
+        boolean requestKeepAlive;
+        try {
+            MediaRequest request = MediaRequest.parse(text);
+            requestKeepAlive = request.isKeepAlive();
+            response = handler.handle(request);
+        } catch (IllegalArgumentException e) {
+            respond(MediaResponse.error(400, "Bad Request"), false);
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("媒体请求处理失败: {}", e.getMessage());
+            respond(MediaResponse.error(500, "Internal Server Error"), false);
+            return;
+        }
+        respond(response, requestKeepAlive);
+    }
+
+    private void respond(MediaResponse response, boolean keepAlive) throws IOException {
+        this.keepAlive = keepAlive;
+        this.head = response.encodeHead(keepAlive);
+        this.body = response.getBody() != null ? response.getBody().duplicate() : null;
+        if (response.getFile() != null && response.getLength() > 0) {
+            this.file = FileChannel.open(response.getFile().toPath(), StandardOpenOption.READ);
+            this.position = response.getPosition();
+            this.remaining = response.getLength();
+        }
+        key.interestOps(SelectionKey.OP_WRITE);
+        onWritable();
+    }
+
+    private void finishResponse() throws IOException {
+        closeFile();
+        head = null;
+        body = null;
+        if (!keepAlive) {
+            close();
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (in.position() > 0) {
+            processRequest();
+        }
+    }
+
+    // 查找请求头结束位置（\r\n\r\n），返回其起始下标
+    private int findHeadEnd() {
+        byte[] data = in.array();
+        for (int i = 3; i < in.position(); i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                return i - 3;
+            }
+        }
+        return -1;
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+                // 只读文件，关闭失败不影响数据
+            }
+            file = null;
+        }
+    }
+
+    void close() {
+        closeFile();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 连接已断开
+        }
+    }
+}
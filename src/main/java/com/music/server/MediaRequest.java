@@ -0,0 +1,83 @@
+package com.music.server;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// 媒体服务器解析出的 HTTP 请求，请求头名称统一为小写
+public class MediaRequest {
+    private final String method;
+    private final String path;
+    private final Map<String, String> query;
+    private final Map<String, String> headers;
+    private final boolean keepAlive;
+
+    private MediaRequest(String method, String path, Map<String, String> query, Map<String, String> headers, boolean keepAlive) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.headers = headers;
+        this.keepAlive = keepAlive;
+    }
+
+    // 解析请求行与请求头（不含结尾空行），格式错误时抛出 IllegalArgumentException
+    public static MediaRequest parse(String head) {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new IllegalArgumentException("请求行格式错误: " + lines[0]);
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("请求头格式错误: " + lines[i]);
+            }
+            headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+        }
+
+        String target = requestLine[1];
+        int question = target.indexOf('?');
+        String path = URLDecoder.decode(question >= 0 ? target.substring(0, question) : target, StandardCharsets.UTF_8);
+        Map<String, String> query = new HashMap<>();
+        if (question >= 0) {
+            for (String pair : target.substring(question + 1).split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        // HTTP/1.1 默认长连接，HTTP/1.0 需要显式声明
+        String connection = headers.getOrDefault("connection", "").toLowerCase();
+        boolean keepAlive = "HTTP/1.1".equals(requestLine[2]) ? !connection.contains("close") : connection.contains("keep-alive");
+        return new MediaRequest(requestLine[0], path, query, headers, keepAlive);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQueryParam(String name) {
+        return query.get(name);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public boolean isHead() {
+        return "HEAD".equals(method);
+    }
+}
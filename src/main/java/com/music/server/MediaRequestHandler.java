@@ -0,0 +1,319 @@
+package com.music.server;
+
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.PlayEventService;
+import com.music.service.PreviewService;
+import com.music.service.StorageTierService;
+import com.music.util.FileUploadUtil;
+import com.music.util.MediaStreamUtil;
+import com.music.util.MediaUrlSigner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+
+// 媒体服务器请求处理：在事件循环线程中执行，只定位文件、计算响应头，不访问数据库
+@Component
+public class MediaRequestHandler {
+    private static final int RESTORE_RETRY_AFTER_SECONDS = 2;
+    private static final int PREVIEW_RETRY_AFTER_SECONDS = 1;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private MediaStreamUtil mediaStreamUtil;
+
+    @Autowired
+    private MediaUrlSigner mediaUrlSigner;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private PlayEventService playEventService;
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    public MediaResponse handle(MediaRequest request) throws IOException {
+        if (!"GET".equals(request.getMethod()) && !request.isHead()) {
+            MediaResponse response = MediaResponse.error(405, "Method Not Allowed");
+            response.setHeader("Allow", "GET, HEAD");
+            return response;
+        }
+        String path = request.getPath();
+        // 兼容 Tomcat 侧签发的带 context-path 的地址
+        if (!contextPath.isEmpty() && path.startsWith(contextPath + "/")) {
+            path = path.substring(contextPath.length());
+        }
+        String[] segments = path.split("/");
+        if (segments.length != 4 || !segments[0].isEmpty() || !isValidName(segments[3])) {
+            return MediaResponse.error(404, "Not Found");
+        }
+        String type = segments[2];
+        String name = segments[3];
+        if ("files".equals(segments[1])) {
+            return handlePublicFile(request, type, name);
+        }
+        if ("media".equals(segments[1])) {
+            return handleSignedFile(request, type, name);
+        }
+        return MediaResponse.error(404, "Not Found");
+    }
+
+    private MediaResponse handlePublicFile(MediaRequest request, String type, String name) throws IOException {
+        File file;
+        switch (type) {
+            case "image" -> file = new File(fileUploadUtil.getImageFilePath(name));
+            case "cover" -> file = new File(fileUploadUtil.getCoverFilePath(name));
+            case "avatar" -> file = new File(fileUploadUtil.getAvatarFilePath(name));
+            case "video" -> file = new File(fileUploadUtil.getVideoFilePath(name));
+            default -> {
+                return MediaResponse.error(404, "Not Found");
+            }
+        }
+        if (!file.isFile()) {
+            return MediaResponse.error(404, "Not Found");
+        }
+        if ("video".equals(type)) {
+            return fileResponse(request, file, mediaStreamUtil.getContentType(file, "video/mp4"),
+                    mediaStreamUtil.getCacheControl(name), false);
+        }
+        Integer size = parseSize(request.getQueryParam("size"));
+        File image = imageVariantService.getVariantIfReady(file, size);
+        // 缩略图尚未生成时返回的原图不能长期缓存
+        CacheControl cacheControl = size != null && image.equals(file)
+                ? mediaStreamUtil.getDefaultCacheControl() : mediaStreamUtil.getCacheControl(name);
+        return fileResponse(request, image, mediaStreamUtil.getContentType(image, MediaType.IMAGE_JPEG_VALUE), cacheControl, false);
+    }
+
+    private MediaResponse handleSignedFile(MediaRequest request, String type, String name) throws IOException {
+        long expiry;
+        Long musicId;
+        Long userId;
+        Integer duration;
+        try {
+            expiry = Long.parseLong(request.getQueryParam("e"));
+            musicId = parseId(request.getQueryParam("m"));
+            userId = parseId(request.getQueryParam("u"));
+            duration = request.getQueryParam("d") != null ? Integer.valueOf(request.getQueryParam("d")) : null;
+        } catch (NumberFormatException e) {
+            return MediaResponse.error(403, "Forbidden");
+        }
+        if (!mediaUrlSigner.verify(type, name, musicId, userId, duration, expiry, request.getQueryParam("s"))) {
+            return MediaResponse.error(403, "Forbidden");
+        }
+        CacheControl cacheControl = CacheControl.maxAge(
+                Duration.ofSeconds(Math.max(0, expiry - System.currentTimeMillis() / 1000))).cachePublic();
+
+        switch (type) {
+            case "music" -> {
+                Optional<File> hotFile = storageTierService.getMusicFileIfHot(name);
+                if (hotFile.isEmpty()) {
+                    return notHot(name);
+                }
+                File musicFile = hotFile.get();
+                MediaResponse response = fileResponse(request, musicFile, "audio/mpeg", cacheControl, true);
+                // 与 Tomcat 侧一致，只有从头开始输出内容的 GET 请求才计一次播放（304、416 与 HEAD 不计）
+                boolean initial = response.getStatus() == 200 || response.getStatus() == 206 && response.getPosition() == 0;
+                if (musicId != null && initial && !request.isHead()) {
+                    playEventService.recordPlay(musicId, userId, duration);
+                    hotTrackCache.recordPlay(musicFile);
+                }
+                return response;
+            }
+            case "preview" -> {
+                Optional<File> hotFile = storageTierService.getMusicFileIfHot(name);
+                if (hotFile.isEmpty()) {
+                    return notHot(name);
+                }
+                // 片段尚未生成时在后台生成，不在事件循环线程中建立帧索引和拷贝
+                Optional<File> preview = previewService.getPreviewIfReady(hotFile.get());
+                if (preview.isEmpty()) {
+                    return previewService.isUnavailable(hotFile.get())
+                            ? MediaResponse.error(404, "Not Found") : retryLater(PREVIEW_RETRY_AFTER_SECONDS);
+                }
+                return fileResponse(request, preview.get(), "audio/mpeg", cacheControl, false);
+            }
+            case "cover" -> {
+                File coverFile = new File(fileUploadUtil.getCoverFilePath(name));
+                if (!coverFile.isFile()) {
+                    return MediaResponse.error(404, "Not Found");
+                }
+                Integer size = parseSize(request.getQueryParam("size"));
+                File image = imageVariantService.getVariantIfReady(coverFile, size);
+                return fileResponse(request, image, mediaStreamUtil.getContentType(image, MediaType.IMAGE_JPEG_VALUE), cacheControl, false);
+            }
+            default -> {
+                return MediaResponse.error(404, "Not Found");
+            }
+        }
+    }
+
+    // 文件响应：条件请求返回 304，单段 Range 返回 206，热门歌曲从内存缓存输出
+    private MediaResponse fileResponse(MediaRequest request, File file, String contentType,
+                                       CacheControl cacheControl, boolean useHotCache) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = mediaStreamUtil.buildETag(file);
+
+        if (isNotModified(request, etag, lastModified)) {
+            MediaResponse response = new MediaResponse(304, "Not Modified");
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", cacheControl.getHeaderValue());
+            return response;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        String rangeHeader = request.getHeader("range");
+        if (rangeHeader != null && isIfRangeSatisfied(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() > 1) {
+                return rangeNotSatisfiable(length);
+            }
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    return rangeNotSatisfiable(length);
+                }
+                if (length == 0 || start > end) {
+                    return rangeNotSatisfiable(length);
+                }
+                partial = true;
+            }
+        }
+
+        MediaResponse response = partial ? new MediaResponse(206, "Partial Content") : new MediaResponse(200, "OK");
+        response.setHeader("Content-Type", contentType);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", etag);
+        response.setHeader("Last-Modified", MediaResponse.formatDate(lastModified));
+        response.setHeader("Cache-Control", cacheControl.getHeaderValue());
+        if (partial) {
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = Math.max(0, end - start + 1);
+        ByteBuffer cached = useHotCache ? hotTrackCache.get(file) : null;
+        if (cached != null) {
+            response.setBody(cached.slice((int) start, (int) count));
+            hotTrackCache.recordHitBytes(count);
+        } else {
+            response.setFileRegion(file, start, count);
+        }
+        if (request.isHead()) {
+            response.clearBody();
+        }
+        return response;
+    }
+
+    // If-None-Match 优先；没有时才看 If-Modified-Since（秒级比较）
+    private boolean isNotModified(MediaRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long since = parseDate(request.getHeader("if-modified-since"));
+        return since != -1 && lastModified / 1000 <= since / 1000;
+    }
+
+    private boolean isIfRangeSatisfied(MediaRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("if-range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long since = parseDate(ifRange);
+        return since != -1 && since / 1000 == lastModified / 1000;
+    }
+
+    private MediaResponse rangeNotSatisfiable(long length) {
+        MediaResponse response = MediaResponse.error(416, "Range Not Satisfiable");
+        response.setHeader("Content-Range", "bytes */" + length);
+        return response;
+    }
+
+    private long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    // 文件名只允许单级名称，防止 ../ 越出存储目录
+    private boolean isValidName(String name) {
+        return !name.isEmpty() && !name.contains("..") && !name.contains("\\") && !name.startsWith(".");
+    }
+
+    private Integer parseSize(String value) {
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // 音乐文件不在存储目录：已归档（正在后台恢复）时返回 503，否则 404
+    private MediaResponse notHot(String name) {
+        if (!fileUploadUtil.getMusicArchiveFile(name).isFile()) {
+            return MediaResponse.error(404, "Not Found");
+        }
+        return retryLater(RESTORE_RETRY_AFTER_SECONDS);
+    }
+
+    private MediaResponse retryLater(int retryAfterSeconds) {
+        MediaResponse response = MediaResponse.error(503, "Service Unavailable");
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        return response;
+    }
+
+    private Long parseId(String value) {
+        return value != null ? Long.valueOf(value) : null;
+    }
+}
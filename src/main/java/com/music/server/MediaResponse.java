@@ -0,0 +1,97 @@
+package com.music.server;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 媒体服务器响应：状态行与响应头，响应体为文件区间（transferTo 零拷贝输出）或内存缓冲区
+public class MediaResponse {
+    private final int status;
+    private final String reason;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private File file;
+    private long position;
+    private long length;
+    private ByteBuffer body;
+
+    public MediaResponse(int status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+
+    // 只带简短文本说明的错误响应
+    public static MediaResponse error(int status, String reason) {
+        MediaResponse response = new MediaResponse(status, reason);
+        response.setHeader("Content-Type", "text/plain;charset=UTF-8");
+        response.setBody(ByteBuffer.wrap(reason.getBytes(StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    public static String formatDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public void setFileRegion(File file, long position, long length) {
+        this.file = file;
+        this.position = position;
+        this.length = length;
+        this.body = null;
+    }
+
+    public void setBody(ByteBuffer body) {
+        this.body = body;
+        this.file = null;
+        this.length = body.remaining();
+    }
+
+    // 不输出响应体（HEAD、304），Content-Length 仍为实际长度
+    public void clearBody() {
+        this.file = null;
+        this.body = null;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public ByteBuffer getBody() {
+        return body;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    // 生成状态行与响应头
+    public ByteBuffer encodeHead(boolean keepAlive) {
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        head.append("Date: ").append(formatDate(System.currentTimeMillis())).append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (status != 304) {
+            head.append("Content-Length: ").append(length).append("\r\n");
+        }
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        return ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
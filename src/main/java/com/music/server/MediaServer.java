@@ -0,0 +1,247 @@
+package com.music.server;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 独立端口的媒体服务器：NIO 事件循环，慢速下载不占用 Tomcat 工作线程
+@Component
+@Slf4j
+public class MediaServer {
+    @Autowired
+    private MediaRequestHandler handler;
+
+    @Value("${media.server.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.server.port:8085}")
+    private int port;
+
+    @Value("${media.server.io-threads:2}")
+    private int ioThreads;
+
+    @Value("${media.server.max-connections:10000}")
+    private int maxConnections;
+
+    @Value("${media.server.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${media.server.max-header-size:8192}")
+    private int maxHeaderSize;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean running;
+
+    // 监控指标
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        running = true;
+        loops = new EventLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        log.info("媒体服务器已启动，端口 {}，事件循环 {} 个", getLocalPort(), loops.length);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // 关闭阶段忽略
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+            try {
+                loop.thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // 实际监听端口（配置为 0 时由系统分配）
+    public int getLocalPort() {
+        try {
+            return serverChannel != null ? ((InetSocketAddress) serverChannel.getLocalAddress()).getPort() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("port", getLocalPort());
+        stats.put("ioThreads", loops != null ? loops.length : 0);
+        stats.put("connections", connections.get());
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connections.get() >= maxConnections) {
+                rejected.incrementAndGet();
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            connections.incrementAndGet();
+            accepted.incrementAndGet();
+            loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].add(channel);
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        private EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "media-io-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void add(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(1000);
+                    registerPending();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                    closeIdle();
+                } catch (IOException e) {
+                    log.warn("媒体服务器事件循环异常: {}", e.getMessage());
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof MediaConnection connection) {
+                    close(connection);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // 关闭阶段忽略
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new MediaConnection(channel, key, handler, maxHeaderSize));
+                } catch (IOException e) {
+                    connections.decrementAndGet();
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // 连接已断开
+                    }
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                try {
+                    accept();
+                } catch (IOException e) {
+                    log.warn("接受连接失败: {}", e.getMessage());
+                }
+                return;
+            }
+            MediaConnection connection = (MediaConnection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.onReadable();
+                } else if (key.isWritable()) {
+                    connection.onWritable();
+                }
+            } catch (IOException e) {
+                // 客户端断开（如拖动进度后放弃旧请求）属于正常情况
+                close(connection);
+                return;
+            }
+            if (!key.isValid()) {
+                connections.decrementAndGet();
+            }
+        }
+
+        // 关闭长时间没有读写进展的连接
+        private void closeIdle() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < 1000) {
+                return;
+            }
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof MediaConnection connection && now - connection.getLastActive() > idleTimeoutMs) {
+                    close(connection);
+                }
+            }
+        }
+
+        private void close(MediaConnection connection) {
+            connection.close();
+            connections.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.music.service;
+
+import com.music.entity.Music;
+import com.music.util.Mp3FrameIndex;
+import com.music.util.Mp3Metadata;
+import com.music.util.Mp3Parser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+// 音频元数据：上传/导入时解析 MP3 标签与时长，并在音频文件旁生成帧偏移索引（.idx）供按时间定位与片段截取使用
+@Service
+@Slf4j
+public class AudioMetadataService {
+    @Autowired
+    private Mp3Parser mp3Parser;
+
+    // 解析音频文件并写入帧索引，非 MP3 或解析失败时返回空
+    public Optional<Mp3Metadata> analyze(File audioFile) {
+        if (!audioFile.getName().toLowerCase().endsWith(".mp3") || !audioFile.isFile()) {
+            return Optional.empty();
+        }
+        try {
+            Mp3Metadata metadata = mp3Parser.parse(audioFile);
+            if (metadata.getFrameIndex() != null && metadata.getFrameCount() > 0) {
+                metadata.getFrameIndex().write(Mp3FrameIndex.indexFileFor(audioFile));
+            }
+            return Optional.of(metadata);
+        } catch (IOException e) {
+            log.warn("解析音频文件失败: {}: {}", audioFile.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // 读取帧索引，索引不存在或已损坏时重新解析生成（兼容索引功能上线前的文件）
+    public Optional<Mp3FrameIndex> getFrameIndex(File audioFile) {
+        File indexFile = Mp3FrameIndex.indexFileFor(audioFile);
+        if (indexFile.isFile() && indexFile.lastModified() >= audioFile.lastModified()) {
+            try {
+                return Optional.of(Mp3FrameIndex.read(indexFile));
+            } catch (IOException e) {
+                log.warn("帧索引损坏，重新生成: {}", indexFile.getName());
+            }
+        }
+        return analyze(audioFile)
+                .map(Mp3Metadata::getFrameIndex)
+                .filter(index -> index.getFrameCount() > 0);
+    }
+
+    // 用解析结果补全歌曲信息：时长以解析结果为准，标题、艺术家、专辑、风格只在为空时填充
+    public void applyTo(Music music, Mp3Metadata metadata) {
+        if (metadata.getDurationMillis() > 0) {
+            music.setDuration(metadata.getDurationSeconds());
+        }
+        if (isBlank(music.getTitle()) && !isBlank(metadata.getTitle())) {
+            music.setTitle(truncate(metadata.getTitle(), 100));
+        }
+        if (isBlank(music.getArtist()) && !isBlank(metadata.getArtist())) {
+            music.setArtist(truncate(metadata.getArtist(), 100));
+        }
+        if (isBlank(music.getAlbum()) && !isBlank(metadata.getAlbum())) {
+            music.setAlbum(truncate(metadata.getAlbum(), 100));
+        }
+        if (isBlank(music.getGenre()) && !isBlank(metadata.getGenre())) {
+            music.setGenre(truncate(metadata.getGenre(), 50));
+        }
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    // 标签内容长度不受控制，按数据库字段长度截断
+    private String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
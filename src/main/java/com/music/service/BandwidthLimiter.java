@@ -0,0 +1,307 @@
+package com.music.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 下载限速（按用户/IP 的令牌桶，未登录用户共用一个桶）与并发下载数限制
+@Service
+@Slf4j
+public class BandwidthLimiter {
+    private static final String REDIS_STREAM_KEY_PREFIX = "media:streams:";
+    // 未登录用户的下载共用一个令牌桶和并发上限
+    private static final String ANONYMOUS_KEY = "anonymous";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${media.bandwidth.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.bandwidth.user-bytes-per-second:2097152}")
+    private long userBytesPerSecond;
+
+    // 按 IP 限制默认关闭：反向代理之后 remoteAddr 是代理地址，需先配置 server.forward-headers-strategy 再开启
+    @Value("${media.bandwidth.ip-limit-enabled:false}")
+    private boolean ipLimitEnabled;
+
+    @Value("${media.bandwidth.ip-bytes-per-second:4194304}")
+    private long ipBytesPerSecond;
+
+    @Value("${media.bandwidth.burst-bytes:1048576}")
+    private long burstBytes;
+
+    @Value("${media.bandwidth.max-streams-per-user:3}")
+    private int maxStreamsPerUser;
+
+    @Value("${media.bandwidth.max-streams-per-ip:6}")
+    private int maxStreamsPerIp;
+
+    @Value("${media.bandwidth.anonymous-bytes-per-second:8388608}")
+    private long anonymousBytesPerSecond;
+
+    @Value("${media.bandwidth.max-anonymous-streams:20}")
+    private int maxAnonymousStreams;
+
+    @Value("${media.bandwidth.redis-sync:false}")
+    private boolean redisSync;
+
+    // Redis 计数的过期时间，防止节点异常退出后计数无法归零；进行中的下载会定期续期
+    @Value("${media.bandwidth.redis-stream-ttl-seconds:600}")
+    private long redisStreamTtlSeconds;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> streams = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong acceptedStreams = new AtomicLong();
+    private final AtomicLong rejectedStreams = new AtomicLong();
+    private final AtomicLong shapedBytes = new AtomicLong();
+    private final AtomicLong rejectedBytes = new AtomicLong();
+    private final AtomicLong throttledMillis = new AtomicLong();
+    private final AtomicLong redisFailures = new AtomicLong();
+
+    // 申请一个下载名额，超过并发上限时返回空；requestedBytes 用于统计被拒绝的流量
+    public Optional<Lease> acquire(Long userId, String ip, long requestedBytes) {
+        if (!enabled) {
+            return Optional.of(new Lease(null, null, null, null, null, null));
+        }
+        String userKey = userId != null ? "user:" + userId : ANONYMOUS_KEY;
+        String ipKey = ipLimitEnabled && ip != null ? "ip:" + ip : null;
+        Slot ipSlot = null;
+        if (ipKey != null) {
+            ipSlot = tryIncrement(ipKey, maxStreamsPerIp);
+            if (ipSlot == Slot.REJECTED) {
+                reject(requestedBytes);
+                return Optional.empty();
+            }
+        }
+        Slot userSlot = tryIncrement(userKey, userId != null ? maxStreamsPerUser : maxAnonymousStreams);
+        if (userSlot == Slot.REJECTED) {
+            if (ipKey != null) {
+                decrement(ipKey, ipSlot);
+            }
+            reject(requestedBytes);
+            return Optional.empty();
+        }
+        acceptedStreams.incrementAndGet();
+        activeStreams.incrementAndGet();
+        TokenBucket userBucket = bucket(userKey, userId != null ? userBytesPerSecond : anonymousBytesPerSecond);
+        TokenBucket ipBucket = ipKey != null ? bucket(ipKey, ipBytesPerSecond) : null;
+        return Optional.of(new Lease(userKey, ipKey, userSlot, ipSlot, userBucket, ipBucket));
+    }
+
+    private void reject(long requestedBytes) {
+        rejectedStreams.incrementAndGet();
+        rejectedBytes.addAndGet(requestedBytes);
+    }
+
+    private TokenBucket bucket(String key, long bytesPerSecond) {
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(bytesPerSecond, Math.max(burstBytes, 1)));
+    }
+
+    // 名额计在哪里：释放时只在占用名额的地方减一，退回本机计数的下载不会去减 Redis 中的计数
+    private enum Slot { REJECTED, LOCAL, REDIS }
+
+    private Slot tryIncrement(String key, int limit) {
+        if (redisSync) {
+            try {
+                String redisKey = REDIS_STREAM_KEY_PREFIX + key;
+                Long count = redisTemplate.opsForValue().increment(redisKey);
+                redisTemplate.expire(redisKey, Duration.ofSeconds(redisStreamTtlSeconds));
+                if (count != null && count > limit) {
+                    redisTemplate.opsForValue().decrement(redisKey);
+                    return Slot.REJECTED;
+                }
+                streams.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                return Slot.REDIS;
+            } catch (RuntimeException e) {
+                redisFailures.incrementAndGet();
+                log.warn("Redis 下载计数失败，使用本机计数: {}", e.getMessage());
+            }
+        }
+        AtomicInteger count = streams.computeIfAbsent(key, k -> new AtomicInteger());
+        if (count.incrementAndGet() > limit) {
+            count.decrementAndGet();
+            return Slot.REJECTED;
+        }
+        return Slot.LOCAL;
+    }
+
+    private void decrement(String key, Slot slot) {
+        AtomicInteger count = streams.get(key);
+        if (count != null) {
+            count.decrementAndGet();
+        }
+        if (slot == Slot.REDIS) {
+            String redisKey = REDIS_STREAM_KEY_PREFIX + key;
+            try {
+                Long remaining = redisTemplate.opsForValue().decrement(redisKey);
+                // 计数曾过期后被重新创建时可能减成负数，删除后从零开始
+                if (remaining != null && remaining < 0) {
+                    redisTemplate.delete(redisKey);
+                }
+            } catch (RuntimeException e) {
+                redisFailures.incrementAndGet();
+            }
+        }
+    }
+
+    // 为进行中的下载续期 Redis 计数，超过 TTL 的长时间下载不会丢失名额
+    private void refresh(String key, Slot slot) {
+        if (slot != Slot.REDIS) {
+            return;
+        }
+        try {
+            redisTemplate.expire(REDIS_STREAM_KEY_PREFIX + key, Duration.ofSeconds(redisStreamTtlSeconds));
+        } catch (RuntimeException e) {
+            redisFailures.incrementAndGet();
+        }
+    }
+
+    // 清理空闲的令牌桶和计数（桶已回满且没有进行中的下载）
+    @Scheduled(fixedDelay = 60000)
+    public void cleanIdle() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(entry -> {
+            AtomicInteger count = streams.get(entry.getKey());
+            return (count == null || count.get() <= 0) && entry.getValue().isFull(now);
+        });
+        streams.entrySet().removeIf(entry -> entry.getValue().get() <= 0 && !buckets.containsKey(entry.getKey()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("userBytesPerSecond", userBytesPerSecond);
+        stats.put("ipLimitEnabled", ipLimitEnabled);
+        stats.put("ipBytesPerSecond", ipBytesPerSecond);
+        stats.put("maxStreamsPerUser", maxStreamsPerUser);
+        stats.put("maxStreamsPerIp", maxStreamsPerIp);
+        stats.put("anonymousBytesPerSecond", anonymousBytesPerSecond);
+        stats.put("maxAnonymousStreams", maxAnonymousStreams);
+        stats.put("redisSync", redisSync);
+        stats.put("activeStreams", activeStreams.get());
+        stats.put("acceptedStreams", acceptedStreams.get());
+        stats.put("rejectedStreams", rejectedStreams.get());
+        stats.put("shapedBytes", shapedBytes.get());
+        stats.put("rejectedBytes", rejectedBytes.get());
+        stats.put("throttledMillis", throttledMillis.get());
+        stats.put("redisFailures", redisFailures.get());
+        return stats;
+    }
+
+    // 一次下载占用的名额，输出结束后必须 close
+    public class Lease implements AutoCloseable {
+        private final String userKey;
+        private final String ipKey;
+        private final Slot userSlot;
+        private final Slot ipSlot;
+        private final TokenBucket userBucket;
+        private final TokenBucket ipBucket;
+        private final boolean counted;
+        private long lastRefresh = System.nanoTime();
+        private boolean closed;
+
+        private Lease(String userKey, String ipKey, Slot userSlot, Slot ipSlot, TokenBucket userBucket, TokenBucket ipBucket) {
+            this.userKey = userKey;
+            this.ipKey = ipKey;
+            this.userSlot = userSlot;
+            this.ipSlot = ipSlot;
+            this.userBucket = userBucket;
+            this.ipBucket = ipBucket;
+            this.counted = enabled;
+        }
+
+        // 写出 bytes 字节之前调用，令牌不足时阻塞到可以发送为止
+        public void throttle(int bytes) throws InterruptedIOException {
+            if (ipBucket == null && userBucket == null) {
+                return;
+            }
+            long waitNanos = 0;
+            if (ipBucket != null) {
+                waitNanos = ipBucket.reserve(bytes);
+            }
+            if (userBucket != null) {
+                waitNanos = Math.max(waitNanos, userBucket.reserve(bytes));
+            }
+            shapedBytes.addAndGet(bytes);
+            long now = System.nanoTime();
+            if (now - lastRefresh > TimeUnit.SECONDS.toNanos(redisStreamTtlSeconds) / 2) {
+                lastRefresh = now;
+                refresh(userKey, userSlot);
+                refresh(ipKey, ipSlot);
+            }
+            if (waitNanos > 0) {
+                throttledMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("下载限速等待被中断");
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (counted) {
+                activeStreams.decrementAndGet();
+            }
+            if (ipKey != null) {
+                decrement(ipKey, ipSlot);
+            }
+            if (userKey != null) {
+                decrement(userKey, userSlot);
+            }
+        }
+    }
+
+    // 令牌桶：允许预扣为负数，欠额按速率折算为等待时间，多个下载按到达顺序公平分摊带宽
+    private static class TokenBucket {
+        private final long bytesPerSecond;
+        private final long capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private TokenBucket(long bytesPerSecond, long capacity) {
+            this.bytesPerSecond = Math.max(1, bytesPerSecond);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        private synchronized long reserve(int bytes) {
+            refill(System.nanoTime());
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / bytesPerSecond);
+        }
+
+        private synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+            lastRefill = now;
+        }
+    }
+}
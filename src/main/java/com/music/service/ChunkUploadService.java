@@ -0,0 +1,344 @@
+package com.music.service;
+
+import com.alibaba.fastjson.JSON;
+import com.music.dto.ChunkUploadSession;
+import com.music.util.FileUploadUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 分片上传（断点续传）：分片按偏移直接写入预分配的目标文件
+@Service
+@Slf4j
+public class ChunkUploadService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SESSION_FILE = "session.json";
+    private static final String DATA_FILE = "data";
+    private static final String DONE_SUFFIX = ".done";
+    private static final Set<String> SUPPORTED_TYPES = Set.of("music", "cover", "image", "video");
+    // 每个请求线程复用一个直接缓冲区，不在每个分片请求中分配（直接内存要等 GC 才释放）
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    // 临时目录需与存储目录位于同一文件系统，合并完成后直接重命名
+    @Value("${file.upload.chunk.temp-path:${file.upload.path}tmp/}")
+    private String tempPath;
+
+    @Value("${file.upload.chunk.size:5242880}")
+    private int chunkSize;
+
+    @Value("${file.upload.chunk.max-file-size:2147483648}")
+    private long maxFileSize;
+
+    @Value("${file.upload.chunk.expire-hours:24}")
+    private long expireHours;
+
+    // 每个用户同时存在的未完成会话数与预分配字节数上限
+    @Value("${file.upload.chunk.max-sessions-per-user:5}")
+    private int maxSessionsPerUser;
+
+    @Value("${file.upload.chunk.max-bytes-per-user:4294967296}")
+    private long maxBytesPerUser;
+
+    // 正在合并的会话，防止重复提交 complete
+    private final Set<String> completing = ConcurrentHashMap.newKeySet();
+
+    // 各用户未完成的会话：userId -> (uploadId -> 文件大小)
+    private final ConcurrentHashMap<Long, Map<String, Long>> activeSessions = new ConcurrentHashMap<>();
+
+    // 启动时按临时目录中的会话恢复各用户的占用
+    @PostConstruct
+    public void loadActiveSessions() {
+        Path root = Paths.get(tempPath);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path dir : stream) {
+                getSession(dir.getFileName().toString()).ifPresent(session ->
+                        activeSessions.computeIfAbsent(session.getUserId(), id -> new ConcurrentHashMap<>())
+                                .put(session.getUploadId(), session.getFileSize()));
+            }
+        } catch (IOException e) {
+            log.warn("读取分片上传临时目录失败", e);
+        }
+    }
+
+    // 创建上传会话
+    public ChunkUploadSession init(Long userId, String type, String fileName, long fileSize, String sha256) throws IOException {
+        if (!SUPPORTED_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Unsupported file type: " + type);
+        }
+        if (fileSize <= 0 || fileSize > maxFileSize) {
+            throw new IllegalArgumentException("Invalid file size: " + fileSize);
+        }
+        String extension = FilenameUtils.getExtension(fileName);
+        if (extension == null || extension.isEmpty()) {
+            throw new IllegalArgumentException("File name must have an extension");
+        }
+
+        ChunkUploadSession session = new ChunkUploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setType(type);
+        session.setFileName(fileName);
+        session.setExtension(extension.toLowerCase());
+        session.setFileSize(fileSize);
+        session.setChunkSize(chunkSize);
+        session.setChunkCount((int) ((fileSize + chunkSize - 1) / chunkSize));
+        session.setSha256(sha256 != null && !sha256.isEmpty() ? sha256.toLowerCase() : null);
+        session.setCreateTime(System.currentTimeMillis());
+
+        reserve(session);
+        Path dir = getSessionDir(session.getUploadId());
+        try {
+            Files.createDirectories(dir);
+            // 预分配目标文件，各分片可以乱序、并发写入各自的偏移
+            try (RandomAccessFile data = new RandomAccessFile(dir.resolve(DATA_FILE).toFile(), "rw")) {
+                data.setLength(fileSize);
+            }
+            Files.writeString(dir.resolve(SESSION_FILE), JSON.toJSONString(session), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            release(session);
+            FileSystemUtils.deleteRecursively(dir);
+            throw e;
+        }
+        return session;
+    }
+
+    // 读取上传会话，不存在或 uploadId 非法时返回空
+    public Optional<ChunkUploadSession> getSession(String uploadId) {
+        if (!isValidUploadId(uploadId)) {
+            return Optional.empty();
+        }
+        Path sessionFile = getSessionDir(uploadId).resolve(SESSION_FILE);
+        if (!Files.exists(sessionFile)) {
+            return Optional.empty();
+        }
+        try {
+            String json = Files.readString(sessionFile, StandardCharsets.UTF_8);
+            return Optional.ofNullable(JSON.parseObject(json, ChunkUploadSession.class));
+        } catch (IOException e) {
+            log.warn("读取分片上传会话失败: {}", uploadId, e);
+            return Optional.empty();
+        }
+    }
+
+    // 写入一个分片：流式写盘并计算 SHA-256，长度或校验和不符时抛出 IllegalArgumentException，客户端重传该分片即可
+    public void writeChunk(ChunkUploadSession session, int index, InputStream in, String expectedSha256) throws IOException {
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Invalid chunk index: " + index);
+        }
+        Path dir = getSessionDir(session.getUploadId());
+        Path marker = dir.resolve(index + DONE_SUFFIX);
+        // 重传已完成的分片时先撤销标记，写入中途断开不会留下“已完成”的脏数据
+        Files.deleteIfExists(marker);
+
+        long expectedLength = session.getChunkLength(index);
+        long position = (long) index * session.getChunkSize();
+        MessageDigest digest = newSha256();
+        long written = 0;
+
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.WRITE);
+             ReadableByteChannel source = Channels.newChannel(in)) {
+            int read;
+            while ((read = source.read(buffer)) >= 0) {
+                if (read == 0) {
+                    continue;
+                }
+                written += read;
+                if (written > expectedLength) {
+                    throw new IllegalArgumentException("Chunk " + index + " exceeds expected length " + expectedLength);
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+            if (written != expectedLength) {
+                throw new IllegalArgumentException("Chunk " + index + " length " + written + " != " + expectedLength);
+            }
+            String actualSha256 = HexFormat.of().formatHex(digest.digest());
+            if (expectedSha256 != null && !expectedSha256.isEmpty() && !expectedSha256.equalsIgnoreCase(actualSha256)) {
+                throw new IllegalArgumentException("Chunk " + index + " checksum mismatch");
+            }
+            // 数据落盘后再写完成标记，保证标记存在时分片内容一定完整
+            channel.force(false);
+        }
+        try {
+            Files.createFile(marker);
+        } catch (FileAlreadyExistsException e) {
+            // 同一分片并发重传，已由另一请求完成
+        }
+    }
+
+    // 已完成的分片序号
+    public List<Integer> getUploadedChunks(ChunkUploadSession session) throws IOException {
+        List<Integer> chunks = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getSessionDir(session.getUploadId()), "*" + DONE_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                chunks.add(Integer.parseInt(name.substring(0, name.length() - DONE_SUFFIX.length())));
+            }
+        }
+        chunks.sort(null);
+        return chunks;
+    }
+
+    // 合并完成：检查所有分片、校验整体 SHA-256，然后把文件移入内容寻址存储，返回存储文件名
+    public String complete(ChunkUploadSession session) throws IOException {
+        String uploadId = session.getUploadId();
+        if (!completing.add(uploadId)) {
+            throw new IllegalStateException("Upload is being completed: " + uploadId);
+        }
+        try {
+            Path dir = getSessionDir(uploadId);
+            for (int i = 0; i < session.getChunkCount(); i++) {
+                if (!Files.exists(dir.resolve(i + DONE_SUFFIX))) {
+                    throw new IllegalStateException("Chunk " + i + " has not been uploaded");
+                }
+            }
+            // 分片可能乱序到达，合并后统一计算一次整体哈希，既用于校验也作为内容寻址的文件名
+            Path data = dir.resolve(DATA_FILE);
+            String sha256 = sha256(data);
+            if (session.getSha256() != null && !session.getSha256().equals(sha256)) {
+                throw new IllegalArgumentException("File checksum mismatch");
+            }
+            String storedName = fileUploadUtil.storeFile(data, session.getExtension(),
+                    fileUploadUtil.getUploadPath(session.getType()), sha256);
+            FileSystemUtils.deleteRecursively(dir);
+            release(session);
+            return storedName;
+        } finally {
+            completing.remove(uploadId);
+        }
+    }
+
+    // 取消上传，删除临时文件
+    public void abort(ChunkUploadSession session) throws IOException {
+        FileSystemUtils.deleteRecursively(getSessionDir(session.getUploadId()));
+        release(session);
+    }
+
+    // 定时清理过期未完成的上传会话
+    @Scheduled(fixedDelayString = "${file.upload.chunk.cleanup-interval-ms:3600000}")
+    public void cleanExpiredSessions() {
+        Path root = Paths.get(tempPath);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - expireHours * 3600_000L;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path dir : stream) {
+                String uploadId = dir.getFileName().toString();
+                if (!Files.isDirectory(dir) || completing.contains(uploadId)) {
+                    continue;
+                }
+                Optional<ChunkUploadSession> session = getSession(uploadId);
+                long createTime = session.map(ChunkUploadSession::getCreateTime)
+                        .orElse(Files.getLastModifiedTime(dir).toMillis());
+                if (createTime < expireBefore) {
+                    FileSystemUtils.deleteRecursively(dir);
+                    session.ifPresent(this::release);
+                    log.info("清理过期分片上传会话: {}", uploadId);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理分片上传临时目录失败", e);
+        }
+    }
+
+    // 登记会话占用，超出每个用户的会话数或字节数上限时抛出 IllegalStateException
+    private void reserve(ChunkUploadSession session) {
+        activeSessions.compute(session.getUserId(), (userId, sessions) -> {
+            Map<String, Long> current = sessions != null ? sessions : new ConcurrentHashMap<>();
+            long bytes = current.values().stream().mapToLong(Long::longValue).sum();
+            if (current.size() >= maxSessionsPerUser) {
+                throw new IllegalStateException("Too many unfinished uploads, limit is " + maxSessionsPerUser);
+            }
+            if (bytes + session.getFileSize() > maxBytesPerUser) {
+                throw new IllegalStateException("Unfinished uploads exceed " + maxBytesPerUser + " bytes");
+            }
+            current.put(session.getUploadId(), session.getFileSize());
+            return current;
+        });
+    }
+
+    private void release(ChunkUploadSession session) {
+        activeSessions.computeIfPresent(session.getUserId(), (userId, sessions) -> {
+            sessions.remove(session.getUploadId());
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private Path getSessionDir(String uploadId) {
+        return Paths.get(tempPath, uploadId);
+    }
+
+    // uploadId 直接参与拼接路径，必须是合法 UUID，防止目录穿越
+    private boolean isValidUploadId(String uploadId) {
+        try {
+            return uploadId != null && UUID.fromString(uploadId).toString().equals(uploadId);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
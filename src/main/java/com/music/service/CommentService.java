@@ -1,16 +1,21 @@
 package com.music.service;
 
+import com.music.dto.CommentDTO;
 import com.music.entity.Comment;
 import com.music.entity.Music;
 import com.music.entity.User;
 import com.music.repository.CommentRepository;
 import com.music.repository.MusicRepository;
+import com.music.service.EngagementCounterService.Counter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -20,6 +25,52 @@ public class CommentService {
     
     @Autowired
     private MusicRepository musicRepository;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private LikeService likeService;
+    
+    // 转换为DTO，点赞数（含回复）包含尚未落库的增量
+    public CommentDTO toDTO(Comment comment) {
+        CommentDTO dto = CommentDTO.fromComment(comment);
+        applyPendingLikes(dto);
+        return dto;
+    }
+    
+    // 批量转换为DTO并附带当前用户的点赞状态：列表及其回复的点赞状态一次查询
+    public List<CommentDTO> toDTOs(List<Comment> comments, Long currentUserId) {
+        List<CommentDTO> dtos = comments.stream().map(this::toDTO).collect(Collectors.toList());
+        if (currentUserId != null && !dtos.isEmpty()) {
+            List<Long> commentIds = new ArrayList<>();
+            dtos.forEach(dto -> collectIds(dto, commentIds));
+            Set<Long> likedCommentIds = likeService.getLikedCommentIds(currentUserId, commentIds);
+            dtos.forEach(dto -> applyLiked(dto, likedCommentIds));
+        }
+        return dtos;
+    }
+    
+    private void collectIds(CommentDTO dto, List<Long> commentIds) {
+        commentIds.add(dto.getId());
+        if (dto.getReplies() != null) {
+            dto.getReplies().forEach(reply -> collectIds(reply, commentIds));
+        }
+    }
+    
+    private void applyLiked(CommentDTO dto, Set<Long> likedCommentIds) {
+        dto.setLiked(likedCommentIds.contains(dto.getId()));
+        if (dto.getReplies() != null) {
+            dto.getReplies().forEach(reply -> applyLiked(reply, likedCommentIds));
+        }
+    }
+    
+    private void applyPendingLikes(CommentDTO dto) {
+        dto.setLikeCount(engagementCounterService.getCurrent(Counter.COMMENT_LIKE, dto.getId(), dto.getLikeCount()));
+        if (dto.getReplies() != null) {
+            dto.getReplies().forEach(this::applyPendingLikes);
+        }
+    }
     
     public Comment createComment(Comment comment) {
         return commentRepository.save(comment);
@@ -0,0 +1,234 @@
+package com.music.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 互动计数：请求线程只在内存中累加增量，定时合并后批量落库
+@Service
+@Slf4j
+public class EngagementCounterService {
+
+    public enum Counter {
+        MUSIC_PLAY("music", "play_count"),
+        MUSIC_DOWNLOAD("music", "download_count"),
+        MUSIC_LIKE("music", "like_count"),
+        POST_LIKE("posts", "like_count"),
+        POST_SHARE("posts", "share_count"),
+        COMMENT_LIKE("comments", "like_count"),
+        PLAYLIST_PLAY("playlist", "play_count");
+
+        private final String updateSql;
+        // 缓存了该表记录（含计数）的缓存，落库后需要清除
+        private final String cacheName;
+
+        Counter(String table, String column) {
+            // 取消点赞等减量不会把计数减成负数
+            this.updateSql = "UPDATE " + table + " SET " + column + " = GREATEST(COALESCE(" + column + ", 0) + ?, 0) WHERE id = ?";
+            this.cacheName = "music".equals(table) ? "music" : null;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // 分段数（取不小于该值的 2 的幂）
+    @Value("${engagement.counter.stripes:16}")
+    private int stripeCount;
+
+    // 各计数的分段：[计数类型][分段] -> 对象ID -> 尚未落库的增量
+    private ConcurrentHashMap<Long, Long>[][] stripes;
+    private int stripeMask;
+
+    // 正在写库的增量，写库完成前仍计入读取结果
+    private final Map<Counter, ConcurrentHashMap<Long, Long>> flushing = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final Map<Counter, AtomicLong> accepted = new ConcurrentHashMap<>();
+    private final Map<Counter, AtomicLong> rowUpdates = new ConcurrentHashMap<>();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void init() {
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        stripeMask = size - 1;
+        stripes = new ConcurrentHashMap[Counter.values().length][size];
+        for (Counter counter : Counter.values()) {
+            for (int i = 0; i < size; i++) {
+                stripes[counter.ordinal()][i] = new ConcurrentHashMap<>();
+            }
+            flushing.put(counter, new ConcurrentHashMap<>());
+            accepted.put(counter, new AtomicLong());
+            rowUpdates.put(counter, new AtomicLong());
+        }
+    }
+
+    // 累加增量；在事务中调用时等事务提交后再累加
+    public void increment(Counter counter, Long id, long delta) {
+        if (id == null || delta == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(counter, id, delta);
+                }
+            });
+        } else {
+            add(counter, id, delta);
+        }
+    }
+
+    public void increment(Counter counter, Long id) {
+        increment(counter, id, 1);
+    }
+
+    // 尚未落库的增量
+    public long getPending(Counter counter, Long id) {
+        long pending = flushing.get(counter).getOrDefault(id, 0L);
+        for (ConcurrentHashMap<Long, Long> stripe : stripes[counter.ordinal()]) {
+            pending += stripe.getOrDefault(id, 0L);
+        }
+        return pending;
+    }
+
+    // 当前计数：已落库的值 + 尚未落库的增量
+    public int getCurrent(Counter counter, Long id, Integer persisted) {
+        long current = (persisted != null ? persisted : 0) + getPending(counter, id);
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, current));
+    }
+
+    @Scheduled(fixedDelayString = "${engagement.counter.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        for (Counter counter : Counter.values()) {
+            flush(counter);
+        }
+        lastFlushMillis = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // 各计数的累计增量、落库的行更新次数与积压
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long totalAccepted = 0;
+        long totalUpdates = 0;
+        Map<String, Object> counters = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            int pendingKeys = 0;
+            for (ConcurrentHashMap<Long, Long> stripe : stripes[counter.ordinal()]) {
+                pendingKeys += stripe.size();
+            }
+            Map<String, Object> counterStats = new LinkedHashMap<>();
+            counterStats.put("accepted", accepted.get(counter).get());
+            counterStats.put("rowUpdates", rowUpdates.get(counter).get());
+            counterStats.put("pendingKeys", pendingKeys);
+            counters.put(counter.name(), counterStats);
+            totalAccepted += accepted.get(counter).get();
+            totalUpdates += rowUpdates.get(counter).get();
+        }
+        stats.put("stripes", stripeMask + 1);
+        stats.put("accepted", totalAccepted);
+        stats.put("rowUpdates", totalUpdates);
+        // 被合并掉的行写入次数
+        stats.put("savedWrites", Math.max(0, totalAccepted - totalUpdates));
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("counters", counters);
+        return stats;
+    }
+
+    private void add(Counter counter, Long id, long delta) {
+        accepted.get(counter).incrementAndGet();
+        long threadId = Thread.currentThread().getId();
+        int index = (int) (threadId ^ (threadId >>> 16)) & stripeMask;
+        stripes[counter.ordinal()][index].merge(id, delta, Long::sum);
+    }
+
+    private void flush(Counter counter) {
+        // 取出各分段的增量并按对象合并；先登记到 flushing 再从分段移除，读取时不会短暂少计
+        ConcurrentHashMap<Long, Long> inFlight = flushing.get(counter);
+        Map<Long, Long> merged = new HashMap<>();
+        for (ConcurrentHashMap<Long, Long> stripe : stripes[counter.ordinal()]) {
+            for (Long id : stripe.keySet()) {
+                stripe.computeIfPresent(id, (key, delta) -> {
+                    inFlight.merge(key, delta, Long::sum);
+                    merged.merge(key, delta, Long::sum);
+                    return null;
+                });
+            }
+        }
+        List<Object[]> batch = new ArrayList<>(merged.size());
+        merged.forEach((id, delta) -> {
+            if (delta != 0) {
+                batch.add(new Object[]{delta, id});
+            }
+        });
+        try {
+            if (!batch.isEmpty()) {
+                // 整批在一个事务中提交：失败时全部回滚，放回的增量不会与已提交的部分重复累加
+                new TransactionTemplate(transactionManager).executeWithoutResult(
+                        status -> jdbcTemplate.batchUpdate(counter.updateSql, batch));
+                rowUpdates.get(counter).addAndGet(batch.size());
+                // 缓存中是落库前的值，不清除的话增量移出 flushing 后读取结果会回落
+                evict(counter, batch);
+            }
+            inFlight.clear();
+        } catch (Exception e) {
+            // 写库失败时把增量放回，下次重试
+            failedFlushes.incrementAndGet();
+            inFlight.clear();
+            merged.forEach((id, delta) -> stripes[counter.ordinal()][0].merge(id, delta, Long::sum));
+            log.warn("{} 计数批量更新失败，{} 个对象的增量将在下次重试: {}", counter, batch.size(), e.getMessage());
+        }
+    }
+
+    private void evict(Counter counter, List<Object[]> batch) {
+        Cache cache = counter.cacheName != null ? cacheManager.getCache(counter.cacheName) : null;
+        if (cache == null) {
+            return;
+        }
+        for (Object[] row : batch) {
+            try {
+                cache.evict(row[1]);
+            } catch (RuntimeException e) {
+                log.warn("清除 {} 缓存失败: {}: {}", counter.cacheName, row[1], e.getMessage());
+            }
+        }
+    }
+}
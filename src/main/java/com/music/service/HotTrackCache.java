@@ -0,0 +1,225 @@
+package com.music.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 热门歌曲堆外缓存：按衰减后的播放热度选出歌曲读入直接内存
+@Service
+@Slf4j
+public class HotTrackCache {
+    @Value("${media.hot-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.hot-cache.max-tracks:50}")
+    private int maxTracks;
+
+    @Value("${media.hot-cache.max-bytes:134217728}")
+    private long maxBytes;
+
+    @Value("${media.hot-cache.max-file-size:20971520}")
+    private long maxFileSize;
+
+    @Value("${media.hot-cache.half-life-minutes:30}")
+    private long halfLifeMinutes;
+
+    // 热度衰减到该值以下的歌曲不再跟踪
+    private static final double MIN_SCORE = 0.05;
+
+    // 播放热度，key 为文件绝对路径
+    private final ConcurrentHashMap<String, Heat> heats = new ConcurrentHashMap<>();
+
+    // 已缓存的歌曲，key 为文件绝对路径
+    private final ConcurrentHashMap<String, CachedTrack> tracks = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong hitBytes = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // 记录一次播放（与播放量统计同一时机调用，拖动进度产生的请求不计入）
+    public void recordPlay(File file) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Heat heat = heats.computeIfAbsent(file.getAbsolutePath(), key -> new Heat(file, now));
+        synchronized (heat) {
+            heat.score = heat.decayed(now, halfLifeMillis()) + 1;
+            heat.updatedAt = now;
+        }
+    }
+
+    // 获取缓存内容（只读视图，position 为 0），未缓存或文件已变化时返回 null
+    public ByteBuffer get(File file) {
+        if (tracks.isEmpty()) {
+            return null;
+        }
+        String key = file.getAbsolutePath();
+        CachedTrack track = tracks.get(key);
+        if (track == null) {
+            return null;
+        }
+        if (track.length != file.length() || track.lastModified != file.lastModified()) {
+            if (tracks.remove(key, track)) {
+                invalidations.incrementAndGet();
+            }
+            return null;
+        }
+        hits.incrementAndGet();
+        return track.buffer.duplicate();
+    }
+
+    // 记录命中后实际输出的字节数
+    public void recordHitBytes(long bytes) {
+        hitBytes.addAndGet(bytes);
+    }
+
+    // 文件删除时移出缓存与热度榜
+    public void evict(File file) {
+        String key = file.getAbsolutePath();
+        heats.remove(key);
+        if (tracks.remove(key) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    // 按当前热度重新选出缓存的歌曲：加载新上榜的，淘汰掉榜的
+    @Scheduled(fixedDelayString = "${media.hot-cache.rebalance-interval-ms:60000}")
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long halfLife = halfLifeMillis();
+        List<Map.Entry<String, Double>> ranking = new ArrayList<>();
+        heats.forEach((key, heat) -> {
+            double score;
+            synchronized (heat) {
+                score = heat.decayed(now, halfLife);
+            }
+            if (score < MIN_SCORE) {
+                heats.remove(key, heat);
+            } else {
+                ranking.add(Map.entry(key, score));
+            }
+        });
+        ranking.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+
+        Set<String> selected = new HashSet<>();
+        long budget = maxBytes;
+        for (Map.Entry<String, Double> entry : ranking) {
+            if (selected.size() >= maxTracks) {
+                break;
+            }
+            Heat heat = heats.get(entry.getKey());
+            if (heat == null) {
+                continue;
+            }
+            long length = heat.file.length();
+            if (length <= 0 || length > maxFileSize || length > budget) {
+                continue;
+            }
+            selected.add(entry.getKey());
+            budget -= length;
+        }
+
+        // 先淘汰再加载，避免新旧缓存叠加超出直接内存预算
+        for (String key : tracks.keySet()) {
+            if (!selected.contains(key) && tracks.remove(key) != null) {
+                evictions.incrementAndGet();
+            }
+        }
+        for (String key : selected) {
+            if (!tracks.containsKey(key)) {
+                Heat heat = heats.get(key);
+                if (heat != null) {
+                    load(key, heat.file);
+                }
+            }
+        }
+    }
+
+    private void load(String key, File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long lastModified = file.lastModified();
+            long size = channel.size();
+            if (size > maxFileSize) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new IOException("文件在读取过程中被截断");
+                }
+            }
+            buffer.flip();
+            tracks.put(key, new CachedTrack(buffer.asReadOnlyBuffer(), size, lastModified));
+            loads.incrementAndGet();
+        } catch (IOException | OutOfMemoryError e) {
+            // 直接内存不足时放弃本次加载，请求照常从磁盘读取
+            log.warn("加载热门歌曲缓存失败: {}: {}", file.getName(), e.getMessage());
+        }
+    }
+
+    private long halfLifeMillis() {
+        return Math.max(1, halfLifeMinutes) * 60_000L;
+    }
+
+    // 缓存运行指标
+    public Map<String, Object> getStats() {
+        long cachedBytes = 0;
+        for (CachedTrack track : tracks.values()) {
+            cachedBytes += track.length;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedTracks", heats.size());
+        stats.put("cachedTracks", tracks.size());
+        stats.put("cachedBytes", cachedBytes);
+        stats.put("maxTracks", maxTracks);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("hitBytes", hitBytes.get());
+        stats.put("loads", loads.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static class Heat {
+        private final File file;
+        private double score;
+        private long updatedAt;
+
+        private Heat(File file, long now) {
+            this.file = file;
+            this.updatedAt = now;
+        }
+
+        private double decayed(long now, long halfLifeMillis) {
+            return score * Math.pow(0.5, (double) (now - updatedAt) / halfLifeMillis);
+        }
+    }
+
+    private record CachedTrack(ByteBuffer buffer, long length, long lastModified) {
+    }
+}
@@ -0,0 +1,344 @@
+package com.music.service;
+
+import com.music.util.FileUploadUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 图片多尺寸缩略图：上传后后台预生成，请求时未生成则短暂等待或返回原图
+@Service
+@Slf4j
+public class ImageVariantService {
+    private static final String VARIANT_MARK = ".w";
+    public static final String JOB_TYPE = "image-variants";
+    // 任务参数：文件类型/存储文件名，如 cover/ab12...jpg
+    private static final Pattern PAYLOAD = Pattern.compile("(image|cover|avatar)/([^/\\\\]+)");
+
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    // FileUploadUtil 依赖本服务删除缩略图，延迟注入打破循环
+    @Autowired
+    @Lazy
+    private FileUploadUtil fileUploadUtil;
+
+    @Value("${image.variant.sizes:96,240,640}")
+    private int[] sizes;
+
+    @Value("${image.variant.workers:2}")
+    private int workers;
+
+    @Value("${image.variant.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${image.variant.wait-timeout-ms:3000}")
+    private long waitTimeoutMs;
+
+    @Value("${image.variant.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    private ThreadPoolExecutor executor;
+
+    // 正在生成的缩略图，key 为缩略图路径
+    private final ConcurrentHashMap<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong servedVariants = new AtomicLong();
+    private final AtomicLong servedOriginals = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(sizes);
+        // 关闭 ImageIO 的磁盘缓存，缩放全部在内存中完成
+        ImageIO.setUseCache(false);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-variant-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        mediaJobService.register(JOB_TYPE, payload -> generateAll(resolve(payload)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 上传后按文件类型和存储文件名入队，由后台任务生成所有尺寸
+    public void generateAsync(String type, String fileName) {
+        mediaJobService.enqueue(JOB_TYPE, type + "/" + fileName);
+    }
+
+    // 执行时再解析存储路径（存储目录可能已迁移）；旧任务的参数是完整路径，直接使用
+    private File resolve(String payload) {
+        Matcher matcher = PAYLOAD.matcher(payload);
+        if (!matcher.matches()) {
+            return new File(payload);
+        }
+        return new File(fileUploadUtil.getFilePath(matcher.group(1), matcher.group(2)));
+    }
+
+    // 在当前线程生成所有尺寸（媒体任务处理），原图已删除时直接返回
+    private void generateAll(File original) throws IOException {
+        if (!original.isFile()) {
+            return;
+        }
+        for (int size : sizes) {
+            // 不是可识别的图片时返回 null，重试也不会成功，直接结束
+            if (resize(original, getVariantFile(original, size), size) == null) {
+                return;
+            }
+        }
+    }
+
+    // 获取不小于请求宽度的最接近的缩略图，size 为空、原图不够大或生成失败时返回原图
+    public File getVariant(File original, Integer size) {
+        if (size == null || size <= 0) {
+            return original;
+        }
+        int width = selectSize(size);
+        File variant = getVariantFile(original, width);
+        if (!variant.exists()) {
+            CompletableFuture<File> future = submit(original, width);
+            try {
+                variant = future != null ? future.get(waitTimeoutMs, TimeUnit.MILLISECONDS) : null;
+            } catch (TimeoutException e) {
+                variant = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                variant = null;
+            } catch (ExecutionException e) {
+                variant = null;
+            }
+        }
+        if (variant == null || !variant.exists()) {
+            servedOriginals.incrementAndGet();
+            return original;
+        }
+        servedVariants.incrementAndGet();
+        savedBytes.addAndGet(Math.max(0, original.length() - variant.length()));
+        return variant;
+    }
+
+    // 不等待的版本（供事件循环线程使用）：缩略图已存在时返回缩略图，否则提交生成并返回原图
+    public File getVariantIfReady(File original, Integer size) {
+        if (size == null || size <= 0) {
+            return original;
+        }
+        int width = selectSize(size);
+        File variant = getVariantFile(original, width);
+        if (!variant.exists()) {
+            submit(original, width);
+            servedOriginals.incrementAndGet();
+            return original;
+        }
+        servedVariants.incrementAndGet();
+        savedBytes.addAndGet(Math.max(0, original.length() - variant.length()));
+        return variant;
+    }
+
+    // 删除原图的所有缩略图
+    public void deleteVariants(File original) {
+        for (int size : sizes) {
+            getVariantFile(original, size).delete();
+        }
+    }
+
+    // 缩略图文件：与原图同目录，文件名追加宽度，统一输出为 jpg（PNG 原图输出 png 以保留透明度）
+    public File getVariantFile(File original, int width) {
+        String extension = original.getName().toLowerCase().endsWith(".png") ? "png" : "jpg";
+        return new File(original.getParentFile(), original.getName() + VARIANT_MARK + width + "." + extension);
+    }
+
+    // 向上取最接近的配置尺寸，超过最大尺寸时取最大尺寸
+    private int selectSize(int requested) {
+        for (int size : sizes) {
+            if (size >= requested) {
+                return size;
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    private CompletableFuture<File> submit(File original, int width) {
+        File variant = getVariantFile(original, width);
+        CompletableFuture<File> created = new CompletableFuture<>();
+        CompletableFuture<File> existing = inFlight.putIfAbsent(variant.getPath(), created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(resize(original, variant, width));
+                } catch (Throwable e) {
+                    failed.incrementAndGet();
+                    log.warn("生成缩略图失败: {} ({}px): {}", original.getName(), width, e.getMessage());
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(variant.getPath(), created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            inFlight.remove(variant.getPath(), created);
+            created.completeExceptionally(e);
+            return null;
+        }
+        return created;
+    }
+
+    // 缩放并写入缩略图；原图本身不够宽时按原尺寸重新编码，保证同一尺寸只解码一次原图
+    private File resize(File original, File variant, int targetWidth) throws IOException {
+        if (variant.exists()) {
+            return variant;
+        }
+        BufferedImage source = read(original, targetWidth);
+        if (source == null) {
+            return null;
+        }
+        int width = Math.min(targetWidth, source.getWidth());
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage scaled = scale(source, width, height, variant.getName().endsWith(".png"));
+
+        // 先写临时文件再原子改名，并发读取时不会读到写了一半的图片
+        Path temp = Files.createTempFile(original.getParentFile().toPath(), ".variant-", ".tmp");
+        try {
+            write(scaled, temp.toFile(), variant.getName().endsWith(".png") ? "png" : "jpg");
+            try {
+                Files.move(temp, variant.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, variant.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        generated.incrementAndGet();
+        return variant;
+    }
+
+    // 读取原图；原图远大于目标尺寸时按整数倍跳采样解码，避免把大图完整解码进内存
+    private BufferedImage read(File file, int targetWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                // 保留两倍目标宽度的像素，缩放时仍有足够的采样保证质量
+                int subsampling = Math.max(1, reader.getWidth(0) / (targetWidth * 2));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, int height, boolean keepAlpha) {
+        BufferedImage target = new BufferedImage(width, height,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (!keepAlpha) {
+                // 透明背景转 jpg 时填充白色，避免变黑
+                graphics.setColor(java.awt.Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, File file, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // 缩略图运行指标
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sizes", sizes);
+        stats.put("workers", workers);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("inFlight", inFlight.size());
+        stats.put("generated", generated.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("servedVariants", servedVariants.get());
+        stats.put("servedOriginals", servedOriginals.get());
+        stats.put("savedBytes", savedBytes.get());
+        return stats;
+    }
+}
@@ -1,11 +1,5 @@
 package com.music.service;
 
-import com.music.entity.Comment;
-import com.music.entity.CommentLike;
-import com.music.entity.Music;
-import com.music.entity.MusicLike;
-import com.music.entity.Post;
-import com.music.entity.PostLike;
 import com.music.entity.User;
 import com.music.repository.CommentLikeRepository;
 import com.music.repository.CommentRepository;
@@ -13,12 +7,15 @@ import com.music.repository.MusicLikeRepository;
 import com.music.repository.MusicRepository;
 import com.music.repository.PostLikeRepository;
 import com.music.repository.PostRepository;
+import com.music.service.EngagementCounterService.Counter;
+import com.music.service.LikedSetCache.Target;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Set;
+
 @Service
 @Transactional
 public class LikeService {
@@ -39,91 +36,93 @@ public class LikeService {
     
     @Autowired
     private CommentRepository commentRepository;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private LikedSetCache likedSetCache;
     
-    @CacheEvict(value = {"postLikeStatus", "commentLikeStatus", "musicLikeStatus"}, allEntries = true)
+    // 切换点赞状态：按当前状态设置为相反状态，返回新的点赞状态
     public boolean togglePostLike(User user, Long postId) {
-        Post post = postRepository.findById(postId).orElseThrow(() -> new RuntimeException("Post not found"));
-        
-        // 检查是否已经点赞
-        boolean isLiked = postLikeRepository.existsByUserIdAndPostId(user.getId(), postId);
-        
-        if (isLiked) {
-            // 取消点赞
-            postLikeRepository.findByUserIdAndPostId(user.getId(), postId).ifPresent(postLikeRepository::delete);
-            post.setLikeCount(post.getLikeCount() - 1);
-        } else {
-            // 点赞
-            PostLike postLike = new PostLike();
-            postLike.setUser(user);
-            postLike.setPost(post);
-            postLikeRepository.save(postLike);
-            post.setLikeCount(post.getLikeCount() + 1);
+        return setPostLike(user, postId, !postLikeRepository.existsByUserIdAndPostId(user.getId(), postId));
+    }
+    
+    // 设置点赞状态（幂等）：依赖唯一索引，重复点赞、重复取消、并发请求都不会产生重复记录，只有确实插入或删除了记录才调整点赞数和缓存
+    public boolean setPostLike(User user, Long postId, boolean liked) {
+        if (!postRepository.existsById(postId)) {
+            throw new RuntimeException("Post not found");
+        }
+        int changed = liked
+                ? postLikeRepository.insertLike(user.getId(), postId)
+                : postLikeRepository.deleteLike(user.getId(), postId);
+        if (changed > 0) {
+            engagementCounterService.increment(Counter.POST_LIKE, postId, liked ? 1 : -1);
+            // 事务提交后更新该用户的点赞集合缓存
+            likedSetCache.update(Target.POST, user.getId(), postId, liked);
         }
-        
-        postRepository.save(post);
-        return !isLiked; // 返回新的点赞状态
+        return liked;
     }
     
-    @CacheEvict(value = {"postLikeStatus", "commentLikeStatus", "musicLikeStatus"}, allEntries = true)
     public boolean toggleCommentLike(User user, Long commentId) {
-        Comment comment = commentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment not found"));
-        
-        // 检查是否已经点赞
-        boolean isLiked = commentLikeRepository.existsByUserIdAndCommentId(user.getId(), commentId);
-        
-        if (isLiked) {
-            // 取消点赞
-            commentLikeRepository.findByUserIdAndCommentId(user.getId(), commentId).ifPresent(commentLikeRepository::delete);
-            comment.setLikeCount(comment.getLikeCount() - 1);
-        } else {
-            // 点赞
-            CommentLike commentLike = new CommentLike();
-            commentLike.setUser(user);
-            commentLike.setComment(comment);
-            commentLikeRepository.save(commentLike);
-            comment.setLikeCount(comment.getLikeCount() + 1);
+        return setCommentLike(user, commentId, !commentLikeRepository.existsByUserIdAndCommentId(user.getId(), commentId));
+    }
+    
+    public boolean setCommentLike(User user, Long commentId, boolean liked) {
+        if (!commentRepository.existsById(commentId)) {
+            throw new RuntimeException("Comment not found");
         }
-        
-        commentRepository.save(comment);
-        return !isLiked; // 返回新的点赞状态
+        int changed = liked
+                ? commentLikeRepository.insertLike(user.getId(), commentId)
+                : commentLikeRepository.deleteLike(user.getId(), commentId);
+        if (changed > 0) {
+            engagementCounterService.increment(Counter.COMMENT_LIKE, commentId, liked ? 1 : -1);
+            likedSetCache.update(Target.COMMENT, user.getId(), commentId, liked);
+        }
+        return liked;
     }
     
-    @Cacheable(value = "postLikeStatus", key = "#userId + '_' + #postId")
     public boolean isPostLikedByUser(Long userId, Long postId) {
-        return postLikeRepository.existsByUserIdAndPostId(userId, postId);
+        return likedSetCache.isLiked(Target.POST, userId, postId);
     }
     
-    @Cacheable(value = "commentLikeStatus", key = "#userId + '_' + #commentId")
     public boolean isCommentLikedByUser(Long userId, Long commentId) {
-        return commentLikeRepository.existsByUserIdAndCommentId(userId, commentId);
+        return likedSetCache.isLiked(Target.COMMENT, userId, commentId);
     }
     
-    @CacheEvict(value = {"postLikeStatus", "commentLikeStatus", "musicLikeStatus"}, allEntries = true)
     public boolean toggleMusicLike(User user, Long musicId) {
-        Music music = musicRepository.findById(musicId).orElseThrow(() -> new RuntimeException("Music not found"));
-        
-        // 检查是否已经收藏
-        boolean isLiked = musicLikeRepository.existsByUserIdAndMusicId(user.getId(), musicId);
-        
-        if (isLiked) {
-            // 取消收藏
-            musicLikeRepository.findByUserIdAndMusicId(user.getId(), musicId).ifPresent(musicLikeRepository::delete);
-            music.setLikeCount(music.getLikeCount() != null ? music.getLikeCount() - 1 : 0);
-        } else {
-            // 收藏
-            MusicLike musicLike = new MusicLike();
-            musicLike.setUser(user);
-            musicLike.setMusic(music);
-            musicLikeRepository.save(musicLike);
-            music.setLikeCount(music.getLikeCount() != null ? music.getLikeCount() + 1 : 1);
+        return setMusicLike(user, musicId, !musicLikeRepository.existsByUserIdAndMusicId(user.getId(), musicId));
+    }
+    
+    // 设置收藏状态（幂等），返回新的收藏状态
+    public boolean setMusicLike(User user, Long musicId, boolean liked) {
+        if (!musicRepository.existsById(musicId)) {
+            throw new RuntimeException("Music not found");
         }
-        
-        musicRepository.save(music);
-        return !isLiked; // 返回新的收藏状态
+        int changed = liked
+                ? musicLikeRepository.insertLike(user.getId(), musicId)
+                : musicLikeRepository.deleteLike(user.getId(), musicId);
+        if (changed > 0) {
+            engagementCounterService.increment(Counter.MUSIC_LIKE, musicId, liked ? 1 : -1);
+            likedSetCache.update(Target.MUSIC, user.getId(), musicId, liked);
+        }
+        return liked;
     }
     
-    @Cacheable(value = "musicLikeStatus", key = "#userId + '_' + #musicId")
     public boolean isMusicLikedByUser(Long userId, Long musicId) {
-        return musicLikeRepository.existsByUserIdAndMusicId(userId, musicId);
+        return likedSetCache.isLiked(Target.MUSIC, userId, musicId);
+    }
+    
+    // 批量查询点赞状态：返回给定动态中该用户点过赞的动态ID（内存中的位图查找）
+    public Set<Long> getLikedPostIds(Long userId, Collection<Long> postIds) {
+        return likedSetCache.filterLiked(Target.POST, userId, postIds);
+    }
+    
+    public Set<Long> getLikedCommentIds(Long userId, Collection<Long> commentIds) {
+        return likedSetCache.filterLiked(Target.COMMENT, userId, commentIds);
+    }
+    
+    public Set<Long> getLikedMusicIds(Long userId, Collection<Long> musicIds) {
+        return likedSetCache.filterLiked(Target.MUSIC, userId, musicIds);
     }
 }
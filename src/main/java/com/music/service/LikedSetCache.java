@@ -0,0 +1,420 @@
+package com.music.service;
+
+import com.music.repository.CommentLikeRepository;
+import com.music.repository.MusicLikeRepository;
+import com.music.repository.PostLikeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 用户点赞集合缓存：每个用户每类对象一个压缩位图，事务提交后更新
+@Service
+@Slf4j
+public class LikedSetCache {
+    private static final String INVALIDATE_CHANNEL = "likes:liked-set:invalidate";
+    private static final long MAX_BITMAP_ID = 0xFFFFFFFFL;
+    // 每个集合除位图外的估算开销（Map 节点、键、条目对象）
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+    // 直接查询数据库时单条 IN 查询的最大ID数
+    private static final int IN_QUERY_CHUNK = 500;
+    // 加载版本号与更新登记的分段数
+    private static final int STAMP_SLOTS = 1024;
+
+    public enum Target {
+        POST, COMMENT, MUSIC
+    }
+
+    @Autowired
+    private PostLikeRepository postLikeRepository;
+
+    @Autowired
+    private CommentLikeRepository commentLikeRepository;
+
+    @Autowired
+    private MusicLikeRepository musicLikeRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Value("${like.liked-set.enabled:true}")
+    private boolean enabled;
+
+    @Value("${like.liked-set.max-users:20000}")
+    private int maxUsers;
+
+    @Value("${like.liked-set.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${like.liked-set.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${like.liked-set.redis-sync:false}")
+    private boolean redisSync;
+
+    private final ConcurrentHashMap<Key, LikedSet> sets = new ConcurrentHashMap<>();
+    // 按用户分段的更新版本号：加载前后版本号不同说明期间有更新，加载结果作废
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_SLOTS);
+    // 按用户分段的更新登记次数与尚未完成的更新数，用于判断更新事务是否重叠
+    private final AtomicLongArray registrations = new AtomicLongArray(STAMP_SLOTS);
+    private final AtomicLongArray inFlight = new AtomicLongArray(STAMP_SLOTS);
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final String nodeId = UUID.randomUUID().toString();
+    private RedisMessageListenerContainer listenerContainer;
+
+    // 监控指标
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadMillis = new AtomicLong();
+    private final AtomicLong discardedLoads = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+    private final AtomicLong databaseQueries = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || !redisSync) {
+            return;
+        }
+        try {
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(redisConnectionFactory);
+            listenerContainer.addMessageListener((message, pattern) ->
+                    onRemoteInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(INVALIDATE_CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        } catch (RuntimeException e) {
+            log.warn("订阅点赞集合失效通知失败，其他节点的点赞变更最多 {} 秒后生效: {}", ttlSeconds, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    // 用户是否点赞了该对象
+    public boolean isLiked(Target target, Long userId, Long targetId) {
+        if (userId == null || targetId == null) {
+            return false;
+        }
+        if (!enabled || !fits(targetId)) {
+            return !queryLiked(target, userId, List.of(targetId)).isEmpty();
+        }
+        return get(target, userId).contains((int) targetId.longValue());
+    }
+
+    // 返回给定对象中用户点过赞的ID（列表页一次内存查找）
+    public Set<Long> filterLiked(Target target, Long userId, Collection<Long> targetIds) {
+        Set<Long> liked = new HashSet<>();
+        if (userId == null || targetIds == null || targetIds.isEmpty()) {
+            return liked;
+        }
+        if (!enabled) {
+            return queryLiked(target, userId, targetIds);
+        }
+        RoaringBitmap bitmap = get(target, userId);
+        List<Long> outOfRange = new ArrayList<>();
+        for (Long targetId : targetIds) {
+            if (targetId == null) {
+                continue;
+            }
+            if (!fits(targetId)) {
+                outOfRange.add(targetId);
+            } else if (bitmap.contains((int) targetId.longValue())) {
+                liked.add(targetId);
+            }
+        }
+        if (!outOfRange.isEmpty()) {
+            liked.addAll(queryLiked(target, userId, outOfRange));
+        }
+        return liked;
+    }
+
+    // 记录点赞/取消点赞（只在点赞记录确实变化时调用）；在事务中调用时等事务提交后再更新，回滚时不更新
+    public void update(Target target, Long userId, Long targetId, boolean liked) {
+        if (!enabled || userId == null || targetId == null) {
+            return;
+        }
+        int slot = slot(new Key(target, userId));
+        // 登记时已有未完成的更新，或完成前又有新的登记，说明更新事务重叠
+        boolean overlapped = inFlight.getAndIncrement(slot) > 0;
+        long registration = registrations.incrementAndGet(slot);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            apply(target, userId, targetId, liked, overlapped, registration);
+                        }
+                    } finally {
+                        inFlight.decrementAndGet(slot);
+                    }
+                }
+            });
+        } else {
+            try {
+                apply(target, userId, targetId, liked, overlapped, registration);
+            } finally {
+                inFlight.decrementAndGet(slot);
+            }
+        }
+    }
+
+    // 丢弃用户的点赞集合，下次查询时重新加载
+    public void invalidate(Target target, Long userId) {
+        Key key = new Key(target, userId);
+        stamps.incrementAndGet(slot(key));
+        removeSet(key);
+    }
+
+    // 缓存的用户数、内存占用（估算）与命中情况
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long likedIds = 0;
+        Map<String, Long> usersByTarget = new LinkedHashMap<>();
+        for (Target target : Target.values()) {
+            usersByTarget.put(target.name(), 0L);
+        }
+        for (LikedSet set : sets.values()) {
+            likedIds += set.bitmap.getLongCardinality();
+            usersByTarget.merge(set.target.name(), 1L, Long::sum);
+        }
+        long bytes = totalBytes.get();
+        int size = sets.size();
+        long lookups = hits.get() + loads.get();
+        stats.put("enabled", enabled);
+        stats.put("redisSync", redisSync && listenerContainer != null);
+        stats.put("sets", size);
+        stats.put("setsByTarget", usersByTarget);
+        stats.put("likedIds", likedIds);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxUsers", maxUsers);
+        stats.put("bytesPerSet", size > 0 ? bytes / size : 0);
+        stats.put("bytesPerLikedId", likedIds > 0 ? (double) bytes / likedIds : 0);
+        stats.put("hits", hits.get());
+        stats.put("loads", loads.get());
+        stats.put("hitRate", lookups > 0 ? (double) hits.get() / lookups : 0);
+        stats.put("loadMillis", loadMillis.get());
+        stats.put("discardedLoads", discardedLoads.get());
+        stats.put("updates", updates.get());
+        stats.put("conflicts", conflicts.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("remoteInvalidations", remoteInvalidations.get());
+        stats.put("databaseQueries", databaseQueries.get());
+        return stats;
+    }
+
+    private RoaringBitmap get(Target target, Long userId) {
+        Key key = new Key(target, userId);
+        long now = System.currentTimeMillis();
+        LikedSet set = sets.get(key);
+        if (set != null) {
+            if (now - set.loadedAt <= ttlSeconds * 1000) {
+                set.lastAccess = now;
+                hits.incrementAndGet();
+                return set.bitmap;
+            }
+            expirations.incrementAndGet();
+        }
+        return load(key, now);
+    }
+
+    private RoaringBitmap load(Key key, long now) {
+        long stamp = stamps.get(slot(key));
+        long start = System.currentTimeMillis();
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Long targetId : loadIds(key.target, key.userId)) {
+            if (targetId != null && fits(targetId)) {
+                bitmap.add((int) targetId.longValue());
+            }
+        }
+        bitmap.runOptimize();
+        loads.incrementAndGet();
+        loadMillis.addAndGet(System.currentTimeMillis() - start);
+
+        LikedSet loaded = new LikedSet(key.target, bitmap, now);
+        // 与 apply 在同一个键上串行执行：加载开始后有过更新则不放入缓存（本次查询仍使用加载结果）
+        sets.compute(key, (k, existing) -> {
+            if (stamps.get(slot(k)) != stamp) {
+                discardedLoads.incrementAndGet();
+                return existing;
+            }
+            totalBytes.addAndGet(loaded.bytes - (existing != null ? existing.bytes : 0));
+            return loaded;
+        });
+        if (sets.size() > maxUsers || totalBytes.get() > maxBytes) {
+            evict();
+        }
+        return bitmap;
+    }
+
+    private void apply(Target target, Long userId, Long targetId, boolean liked, boolean overlapped, long registration) {
+        updates.incrementAndGet();
+        Key key = new Key(target, userId);
+        int slot = slot(key);
+        stamps.incrementAndGet(slot);
+        if (overlapped || !fits(targetId)) {
+            // 与其他更新重叠时无法确定最终状态，丢弃集合重新加载；超出位图范围的ID直接查询数据库，缓存无需更新
+            if (overlapped) {
+                conflicts.incrementAndGet();
+                removeSet(key);
+            }
+        } else {
+            // 检查与修改在同一个键上串行执行：期间有新的更新登记时同样丢弃集合
+            sets.computeIfPresent(key, (k, existing) -> {
+                if (registrations.get(slot) != registration) {
+                    conflicts.incrementAndGet();
+                    totalBytes.addAndGet(-existing.bytes);
+                    return null;
+                }
+                RoaringBitmap bitmap = existing.bitmap.clone();
+                if (liked) {
+                    bitmap.add((int) targetId.longValue());
+                } else {
+                    bitmap.remove((int) targetId.longValue());
+                }
+                LikedSet updated = new LikedSet(target, bitmap, existing.loadedAt);
+                updated.lastAccess = existing.lastAccess;
+                totalBytes.addAndGet(updated.bytes - existing.bytes);
+                return updated;
+            });
+        }
+        if (redisSync && listenerContainer != null) {
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + ":" + target.name() + ":" + userId);
+            } catch (RuntimeException e) {
+                log.warn("发布点赞集合失效通知失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void removeSet(Key key) {
+        sets.computeIfPresent(key, (k, existing) -> {
+            totalBytes.addAndGet(-existing.bytes);
+            return null;
+        });
+    }
+
+    private void onRemoteInvalidate(String message) {
+        String[] parts = message.split(":");
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            invalidate(Target.valueOf(parts[1]), Long.valueOf(parts[2]));
+            remoteInvalidations.incrementAndGet();
+        } catch (IllegalArgumentException e) {
+            log.warn("无法解析点赞集合失效通知: {}", message);
+        }
+    }
+
+    // 超出上限时淘汰最久未访问的集合，降到上限的 90% 以下，避免每次加载都触发淘汰
+    private synchronized void evict() {
+        long targetUsers = maxUsers * 9L / 10;
+        long targetBytes = maxBytes * 9 / 10;
+        if (sets.size() <= maxUsers && totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Map.Entry<Key, LikedSet>> entries = new ArrayList<>(sets.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<Key, LikedSet> entry : entries) {
+            if (sets.size() <= targetUsers && totalBytes.get() <= targetBytes) {
+                break;
+            }
+            if (sets.remove(entry.getKey(), entry.getValue())) {
+                totalBytes.addAndGet(-entry.getValue().bytes);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private List<Long> loadIds(Target target, Long userId) {
+        databaseQueries.incrementAndGet();
+        return switch (target) {
+            case POST -> postLikeRepository.findPostIdsByUserId(userId);
+            case COMMENT -> commentLikeRepository.findCommentIdsByUserId(userId);
+            case MUSIC -> musicLikeRepository.findMusicIdsByUserId(userId);
+        };
+    }
+
+    // 直接查询数据库：去重后按块执行 IN 查询
+    private Set<Long> queryLiked(Target target, Long userId, Collection<Long> targetIds) {
+        Set<Long> liked = new HashSet<>();
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(targetIds));
+        distinctIds.remove(null);
+        for (int from = 0; from < distinctIds.size(); from += IN_QUERY_CHUNK) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + IN_QUERY_CHUNK, distinctIds.size()));
+            databaseQueries.incrementAndGet();
+            liked.addAll(switch (target) {
+                case POST -> postLikeRepository.findLikedPostIds(userId, chunk);
+                case COMMENT -> commentLikeRepository.findLikedCommentIds(userId, chunk);
+                case MUSIC -> musicLikeRepository.findLikedMusicIds(userId, chunk);
+            });
+        }
+        return liked;
+    }
+
+    private static boolean fits(long targetId) {
+        return targetId >= 0 && targetId <= MAX_BITMAP_ID;
+    }
+
+    private static int slot(Key key) {
+        return (Long.hashCode(key.userId) * 31 + key.target.ordinal()) & (STAMP_SLOTS - 1);
+    }
+
+    private record Key(Target target, long userId) {
+    }
+
+    // 一个用户对一类对象的点赞集合，位图创建后不再修改（更新时复制）
+    private static class LikedSet {
+        final Target target;
+        final RoaringBitmap bitmap;
+        final long bytes;
+        final long loadedAt;
+        volatile long lastAccess;
+
+        LikedSet(Target target, RoaringBitmap bitmap, long loadedAt) {
+            this.target = target;
+            this.bitmap = bitmap;
+            this.bytes = bitmap.getLongSizeInBytes() + ENTRY_OVERHEAD_BYTES;
+            this.loadedAt = loadedAt;
+            this.lastAccess = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.music.service;
+
+import com.music.util.LoudnessMeter;
+import com.music.util.Mp3Decoder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 服务端响度分析：后台解码计算积分响度与峰值，按 file_path 写入 music 表
+@Service
+@Slf4j
+public class LoudnessService {
+    private static final String UPDATE_LOUDNESS_SQL =
+            "UPDATE music SET loudness = ?, loudness_peak = ?, loudness_analyzed = 1 WHERE file_path = ?";
+    // 静音、无法解码或文件已丢失：没有结果，但记为已分析，补齐时不再入队
+    private static final String MARK_ANALYZED_SQL = "UPDATE music SET loudness_analyzed = 1 WHERE file_path = ?";
+    private static final String SELECT_IDS_SQL = "SELECT id FROM music WHERE file_path = ?";
+    // 跳过已有待处理/处理中任务的文件，重复补齐不会堆积重复任务
+    private static final String SELECT_UNANALYZED_SQL =
+            "SELECT DISTINCT m.file_path FROM music m WHERE m.loudness IS NULL AND m.loudness_analyzed = 0 " +
+                    "AND NOT EXISTS (SELECT 1 FROM media_job j WHERE j.job_type = ? AND j.payload = m.file_path " +
+                    "AND j.status IN (" + MediaJobService.STATUS_PENDING + ", " + MediaJobService.STATUS_RUNNING + ")) LIMIT ?";
+    public static final String JOB_TYPE = "loudness";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    // 响度归一化的目标值（ReplayGain 2.0 为 -18 LUFS）
+    @Value("${media.loudness.reference-lufs:-18}")
+    private double referenceLufs;
+
+    // 监控指标
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong analyzeMillis = new AtomicLong();
+    private final AtomicLong audioMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 任务参数为存储文件名，执行时再解析（文件可能已被归档，存储目录也可能已迁移）
+        mediaJobService.register(JOB_TYPE, payload -> analyze(storageTierService.getMusicFile(new File(payload).getName())));
+    }
+
+    // 入队分析（歌曲记录保存后调用）
+    public void analyzeAsync(String fileName) {
+        mediaJobService.enqueue(JOB_TYPE, fileName);
+    }
+
+    // 批量入队（导入时在批次事务中调用，与歌曲记录一起提交）
+    public void analyzeAllAsync(List<String> fileNames) {
+        mediaJobService.enqueueAll(JOB_TYPE, fileNames);
+    }
+
+    // 补齐尚未分析的歌曲（如本功能上线前的存量歌曲），返回入队的文件数
+    public int backfill(int limit) {
+        List<String> filePaths = jdbcTemplate.queryForList(SELECT_UNANALYZED_SQL, String.class, JOB_TYPE, limit);
+        analyzeAllAsync(filePaths);
+        return filePaths.size();
+    }
+
+    // 按响度计算回放增益（dB），未分析时返回 null
+    public Double getReplayGain(Double loudness) {
+        return loudness != null ? Math.round((referenceLufs - loudness) * 100) / 100.0 : null;
+    }
+
+    private void analyze(File audioFile) throws IOException {
+        if (!audioFile.isFile()) {
+            jdbcTemplate.update(MARK_ANALYZED_SQL, audioFile.getName());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LoudnessMeter meter = new LoudnessMeter();
+        AtomicLong samples = new AtomicLong();
+        AtomicInteger sampleRate = new AtomicInteger();
+        Mp3Decoder.decode(audioFile, (buffer, length, channels, rate) -> {
+            meter.process(buffer, length, channels, rate);
+            samples.addAndGet(length / Math.max(1, channels));
+            sampleRate.compareAndSet(0, rate);
+        });
+        analyzeMillis.addAndGet(System.currentTimeMillis() - start);
+        if (sampleRate.get() > 0) {
+            audioMillis.addAndGet(samples.get() * 1000 / sampleRate.get());
+        }
+
+        Double loudness = meter.getIntegratedLoudness();
+        if (loudness == null) {
+            // 无法解码或整首静音，不写入响度（避免误导客户端放大增益），只记为已分析
+            jdbcTemplate.update(MARK_ANALYZED_SQL, audioFile.getName());
+            return;
+        }
+        double roundedLoudness = Math.round(loudness * 100) / 100.0;
+        double peak = Math.round(meter.getPeak() * 10000) / 10000.0;
+        String fileName = audioFile.getName();
+        jdbcTemplate.update(UPDATE_LOUDNESS_SQL, roundedLoudness, peak, fileName);
+        Cache cache = cacheManager.getCache("music");
+        if (cache != null) {
+            jdbcTemplate.queryForList(SELECT_IDS_SQL, Long.class, fileName).forEach(cache::evict);
+        }
+        analyzed.incrementAndGet();
+    }
+
+    // 响度分析运行指标
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("referenceLufs", referenceLufs);
+        stats.put("analyzed", analyzed.get());
+        stats.put("analyzeMillis", analyzeMillis.get());
+        // 解码速度（音频时长 / 分析耗时）
+        stats.put("realtimeFactor", analyzeMillis.get() > 0 ? (double) audioMillis.get() / analyzeMillis.get() : 0);
+        return stats;
+    }
+}
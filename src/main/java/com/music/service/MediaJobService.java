@@ -0,0 +1,355 @@
+package com.music.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 持久化的媒体处理任务队列（media_job 表），多节点用 SKIP LOCKED 领取任务
+@Service
+@Slf4j
+public class MediaJobService {
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_RUNNING = 1;
+    public static final int STATUS_DONE = 2;
+    public static final int STATUS_FAILED = 3;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO media_job (job_type, payload, status, attempts, max_attempts, run_after) VALUES (?, ?, 0, 0, ?, NOW(3))";
+    private static final String CLAIM_SELECT_SQL =
+            "SELECT id, payload, attempts FROM media_job WHERE job_type = ? AND status = 0 AND run_after <= NOW(3) " +
+                    "ORDER BY run_after, id LIMIT 1 FOR UPDATE SKIP LOCKED";
+    private static final String CLAIM_UPDATE_SQL =
+            "UPDATE media_job SET status = 1, attempts = attempts + 1, locked_by = ?, " +
+                    "lease_until = DATE_ADD(NOW(3), INTERVAL ? MICROSECOND) WHERE id = ?";
+    private static final String COMPLETE_SQL =
+            "UPDATE media_job SET status = 2, lease_until = NULL, last_error = NULL WHERE id = ? AND locked_by = ?";
+    private static final String RETRY_SQL =
+            "UPDATE media_job SET status = 0, lease_until = NULL, last_error = ?, " +
+                    "run_after = DATE_ADD(NOW(3), INTERVAL ? MICROSECOND) WHERE id = ? AND locked_by = ?";
+    private static final String FAIL_SQL =
+            "UPDATE media_job SET status = 3, lease_until = NULL, last_error = ? WHERE id = ? AND locked_by = ?";
+    private static final String RECLAIM_EXPIRED_SQL =
+            "UPDATE media_job SET status = IF(attempts >= max_attempts, 3, 0), lease_until = NULL, " +
+                    "last_error = '租约过期（处理节点中断）', run_after = NOW(3) WHERE status = 1 AND lease_until < NOW(3)";
+    private static final String PURGE_DONE_SQL =
+            "DELETE FROM media_job WHERE status = 2 AND update_time < DATE_SUB(NOW(), INTERVAL ? HOUR) LIMIT ?";
+    private static final String RETRY_FAILED_SQL =
+            "UPDATE media_job SET status = 0, attempts = 0, last_error = NULL, run_after = NOW(3) WHERE id = ? AND status = 3";
+    private static final String COUNT_SQL =
+            "SELECT job_type, status, COUNT(*) AS total, MIN(run_after) AS oldest FROM media_job GROUP BY job_type, status";
+    private static final String LIST_FAILED_SQL =
+            "SELECT id, job_type, payload, attempts, last_error, update_time FROM media_job " +
+                    "WHERE status = 3 AND (? IS NULL OR job_type = ?) ORDER BY id DESC LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${media.jobs.enabled:true}")
+    private boolean enabled;
+
+    // 未单独配置的任务类型的工作线程数
+    @Value("${media.jobs.default-workers:1}")
+    private int defaultWorkers;
+
+    @Value("${media.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    // 租约时长：超过该时间未完成的任务视为处理节点中断，重新放回队列
+    @Value("${media.jobs.lease-ms:600000}")
+    private long leaseMs;
+
+    // 空闲时轮询数据库的间隔；本节点入队时立即唤醒对应类型的工作线程
+    @Value("${media.jobs.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    @Value("${media.jobs.backoff-base-ms:10000}")
+    private long backoffBaseMs;
+
+    @Value("${media.jobs.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    // 已完成任务的保留时间（小时）
+    @Value("${media.jobs.retention-hours:72}")
+    private int retentionHours;
+
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, TypeWorkers> workers = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    @FunctionalInterface
+    public interface Handler {
+        // 处理一个任务，抛出异常表示失败（按退避时间重试）；处理逻辑需幂等，同一任务可能被执行多次
+        void handle(String payload) throws Exception;
+    }
+
+    // 注册任务类型的处理逻辑（各服务在 @PostConstruct 中调用），应用启动完成后开始消费
+    public void register(String type, Handler handler) {
+        handlers.put(type, handler);
+        if (running) {
+            startWorkers(type);
+        }
+    }
+
+    // 入队一个任务
+    public void enqueue(String type, String payload) {
+        jdbcTemplate.update(INSERT_SQL, type, payload, maxAttempts);
+        wake(type);
+    }
+
+    // 批量入队（可在调用方的事务中执行，与业务数据一起提交）
+    public void enqueueAll(String type, List<String> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(payloads.size());
+        for (String payload : payloads) {
+            rows.add(new Object[]{type, payload, maxAttempts});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        wake(type);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        handlers.keySet().forEach(this::startWorkers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.values().forEach(typeWorkers -> typeWorkers.executor.shutdownNow());
+    }
+
+    // 放回租约过期的任务，清理过期的已完成任务
+    @Scheduled(fixedDelayString = "${media.jobs.maintenance-interval-ms:60000}")
+    public void maintain() {
+        if (!running) {
+            return;
+        }
+        try {
+            int reclaimed = jdbcTemplate.update(RECLAIM_EXPIRED_SQL);
+            if (reclaimed > 0) {
+                log.warn("放回 {} 个租约过期的媒体任务", reclaimed);
+            }
+            int purged;
+            do {
+                purged = jdbcTemplate.update(PURGE_DONE_SQL, retentionHours, 1000);
+            } while (purged == 1000);
+        } catch (Exception e) {
+            log.warn("媒体任务队列维护失败: {}", e.getMessage());
+        }
+    }
+
+    // 手动重试失败的任务
+    public boolean retryFailed(long id) {
+        boolean updated = jdbcTemplate.update(RETRY_FAILED_SQL, id) > 0;
+        if (updated) {
+            workers.keySet().forEach(this::wake);
+        }
+        return updated;
+    }
+
+    public List<Map<String, Object>> listFailed(String type, int limit) {
+        return jdbcTemplate.queryForList(LIST_FAILED_SQL, type, type, limit);
+    }
+
+    // 各任务类型的队列长度（按状态）与本节点的处理统计
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> types = new LinkedHashMap<>();
+        for (String type : handlers.keySet()) {
+            types.put(type, new LinkedHashMap<>());
+        }
+        String[] statusNames = {"pending", "running", "done", "failed"};
+        for (Map<String, Object> row : jdbcTemplate.queryForList(COUNT_SQL)) {
+            Map<String, Object> typeStats = types.computeIfAbsent((String) row.get("job_type"), key -> new LinkedHashMap<>());
+            int status = ((Number) row.get("status")).intValue();
+            typeStats.put(status < statusNames.length ? statusNames[status] : "status" + status, row.get("total"));
+            if (status == STATUS_PENDING) {
+                typeStats.put("oldestPending", row.get("oldest"));
+            }
+        }
+        types.forEach((type, typeStats) -> {
+            TypeWorkers typeWorkers = workers.get(type);
+            if (typeWorkers != null) {
+                typeStats.put("workers", typeWorkers.size);
+                typeStats.put("busy", typeWorkers.busy.get());
+                typeStats.put("processed", typeWorkers.processed.get());
+                typeStats.put("retried", typeWorkers.retried.get());
+                typeStats.put("failed", typeWorkers.failed.get());
+                typeStats.put("processMillis", typeWorkers.processMillis.get());
+            }
+        });
+        stats.put("enabled", enabled);
+        stats.put("types", types);
+        return stats;
+    }
+
+    private synchronized void startWorkers(String type) {
+        if (workers.containsKey(type)) {
+            return;
+        }
+        int size = Math.max(1, environment.getProperty("media.jobs.workers." + type, Integer.class, defaultWorkers));
+        TypeWorkers typeWorkers = new TypeWorkers(type, size);
+        workers.put(type, typeWorkers);
+        for (int i = 0; i < size; i++) {
+            typeWorkers.executor.execute(() -> work(typeWorkers));
+        }
+        log.info("媒体任务 {} 启动 {} 个工作线程", type, size);
+    }
+
+    private void wake(String type) {
+        TypeWorkers typeWorkers = workers.get(type);
+        if (typeWorkers != null) {
+            synchronized (typeWorkers.signal) {
+                typeWorkers.signal.notifyAll();
+            }
+        }
+    }
+
+    // 工作线程主循环：领取 -> 处理 -> 回写结果；没有任务时等待入队通知或轮询间隔，数据库异常时退避
+    private void work(TypeWorkers typeWorkers) {
+        Handler handler = handlers.get(typeWorkers.type);
+        long errorBackoff = pollIntervalMs;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            ClaimedJob job;
+            try {
+                job = claim(typeWorkers.type);
+                errorBackoff = pollIntervalMs;
+            } catch (Exception e) {
+                log.warn("领取媒体任务失败 ({}): {}", typeWorkers.type, e.getMessage());
+                sleep(typeWorkers, errorBackoff);
+                errorBackoff = Math.min(errorBackoff * 2, 30000);
+                continue;
+            }
+            if (job == null) {
+                sleep(typeWorkers, pollIntervalMs);
+                continue;
+            }
+            typeWorkers.busy.incrementAndGet();
+            long start = System.currentTimeMillis();
+            try {
+                handler.handle(job.payload);
+                jdbcTemplate.update(COMPLETE_SQL, job.id, job.token);
+                typeWorkers.processed.incrementAndGet();
+            } catch (Exception e) {
+                onFailure(typeWorkers, job, e);
+            } finally {
+                typeWorkers.processMillis.addAndGet(System.currentTimeMillis() - start);
+                typeWorkers.busy.decrementAndGet();
+            }
+        }
+    }
+
+    private ClaimedJob claim(String type) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            List<ClaimedJob> jobs = jdbcTemplate.query(CLAIM_SELECT_SQL, (rs, rowNum) ->
+                    new ClaimedJob(rs.getLong("id"), rs.getString("payload"), rs.getInt("attempts") + 1,
+                            UUID.randomUUID().toString()), type);
+            if (jobs.isEmpty()) {
+                return null;
+            }
+            ClaimedJob job = jobs.get(0);
+            jdbcTemplate.update(CLAIM_UPDATE_SQL, job.token, leaseMs * 1000, job.id);
+            return job;
+        });
+    }
+
+    private void onFailure(TypeWorkers typeWorkers, ClaimedJob job, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > 500) {
+            error = error.substring(0, 500);
+        }
+        try {
+            if (job.attempts >= maxAttempts) {
+                typeWorkers.failed.incrementAndGet();
+                jdbcTemplate.update(FAIL_SQL, error, job.id, job.token);
+                log.warn("媒体任务 {}#{} 重试 {} 次后失败: {}", typeWorkers.type, job.id, job.attempts, error);
+            } else {
+                typeWorkers.retried.incrementAndGet();
+                jdbcTemplate.update(RETRY_SQL, error, backoffMillis(job.attempts) * 1000, job.id, job.token);
+                log.info("媒体任务 {}#{} 第 {} 次执行失败，稍后重试: {}", typeWorkers.type, job.id, job.attempts, error);
+            }
+        } catch (Exception updateError) {
+            // 结果没有写回时任务保持领取状态，租约过期后重新执行
+            log.warn("媒体任务 {}#{} 状态回写失败: {}", typeWorkers.type, job.id, updateError.getMessage());
+        }
+    }
+
+    // 指数退避：base * 2^(attempts-1)，上限 backoff-max-ms，叠加 ±20% 抖动避免同时失败的任务同时重试
+    private long backoffMillis(int attempts) {
+        long delay = backoffBaseMs << Math.min(20, Math.max(0, attempts - 1));
+        delay = Math.min(backoffMaxMs, delay);
+        return (long) (delay * (0.8 + ThreadLocalRandom.current().nextDouble() * 0.4));
+    }
+
+    private void sleep(TypeWorkers typeWorkers, long millis) {
+        synchronized (typeWorkers.signal) {
+            try {
+                typeWorkers.signal.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record ClaimedJob(long id, String payload, int attempts, String token) {
+    }
+
+    // 一种任务类型的工作线程与统计
+    private static class TypeWorkers {
+        private final String type;
+        private final int size;
+        private final ExecutorService executor;
+        private final Object signal = new Object();
+        private final AtomicInteger busy = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong processMillis = new AtomicLong();
+
+        private TypeWorkers(String type, int size) {
+            this.type = type;
+            this.size = size;
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(size, runnable -> {
+                Thread thread = new Thread(runnable, "media-job-" + type + "-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                // 后台处理让位于请求处理线程
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+    }
+}
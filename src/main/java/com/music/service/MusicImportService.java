@@ -0,0 +1,367 @@
+package com.music.service;
+
+import com.music.entity.Music;
+import com.music.entity.User;
+import com.music.repository.UserRepository;
+import com.music.util.FileUploadUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// 本地曲库批量导入：并行拷贝与解析，按批次在事务中写库，中断后可续跑
+@Service
+@Slf4j
+public class MusicImportService {
+    private static final String INSERT_MUSIC_SQL =
+            "INSERT INTO music (title, artist, album, genre, duration, file_path, description, play_count, download_count, " +
+                    "comment_count, like_count, share_count, musician_id, is_original, status) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0, 0, 0, 0, ?, 0, 1)";
+    private static final String UPSERT_ITEM_SQL =
+            "INSERT INTO music_import_item (source_path, file_size, last_modified, status, file_path, error_message) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE file_size = VALUES(file_size), " +
+                    "last_modified = VALUES(last_modified), status = VALUES(status), file_path = VALUES(file_path), " +
+                    "error_message = VALUES(error_message)";
+    private static final String SELECT_IMPORTED_SQL =
+            "SELECT source_path, file_size, last_modified FROM music_import_item WHERE status = 1";
+
+    private static final int STATUS_IMPORTED = 1;
+    private static final int STATUS_FAILED = 2;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Autowired
+    private AudioMetadataService audioMetadataService;
+
+    @Autowired
+    private WaveformService waveformService;
+
+    @Autowired
+    private LoudnessService loudnessService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // 导入根目录，管理接口指定的目录必须位于其中；未配置时不能导入
+    @Value("${music.import.source-dir:}")
+    private String defaultSourceDir;
+
+    @Value("${music.import.workers:4}")
+    private int workers;
+
+    @Value("${music.import.batch-size:200}")
+    private int batchSize;
+
+    // 任务调度线程，同一时间只运行一个导入任务
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "music-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConcurrentLinkedQueue<ImportResult> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingResults = new AtomicInteger();
+
+    // 当前（或最近一次）任务的状态
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile String sourceDir;
+    private volatile LocalDateTime startTime;
+    private volatile LocalDateTime finishTime;
+    private volatile String lastError;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong importedBytes = new AtomicLong();
+
+    // 启动导入任务，directory 为空时使用配置的源目录；已有任务在运行时返回 false
+    public synchronized boolean start(String directory) {
+        if (running) {
+            return false;
+        }
+        Path dir = resolveSourceDir(directory);
+        running = true;
+        cancelled = false;
+        sourceDir = dir.toString();
+        startTime = LocalDateTime.now();
+        finishTime = null;
+        lastError = null;
+        scanned.set(0);
+        skipped.set(0);
+        submitted.set(0);
+        imported.set(0);
+        failed.set(0);
+        importedBytes.set(0);
+        jobExecutor.execute(() -> {
+            try {
+                runJob(dir);
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                log.error("本地音乐导入任务失败: {}", dir, e);
+            } finally {
+                finishTime = LocalDateTime.now();
+                running = false;
+            }
+        });
+        return true;
+    }
+
+    // 源目录只能是导入根目录或其子目录，防止把服务器上的任意目录拷进公开存储
+    private Path resolveSourceDir(String directory) {
+        if (defaultSourceDir == null || defaultSourceDir.isBlank()) {
+            throw new IllegalStateException("music.import.source-dir is not configured");
+        }
+        Path root = Paths.get(defaultSourceDir).toAbsolutePath().normalize();
+        if (directory == null || directory.isBlank()) {
+            return root;
+        }
+        Path dir = root.resolve(directory).normalize();
+        boolean inside = dir.startsWith(root);
+        try {
+            // 符号链接可能指向根目录之外，按真实路径再比较一次
+            if (inside && Files.exists(dir)) {
+                inside = dir.toRealPath().startsWith(root.toRealPath());
+            }
+        } catch (IOException e) {
+            inside = false;
+        }
+        if (!inside) {
+            throw new IllegalArgumentException("sourceDir must be inside " + root);
+        }
+        return dir;
+    }
+
+    // 请求停止当前任务，已提交的文件处理完并落库后退出
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelled = true;
+        jobExecutor.shutdown();
+    }
+
+    private void runJob(Path root) throws IOException, InterruptedException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("源目录不存在: " + root);
+        }
+        log.info(">>>开始导入本地音乐: {}", root);
+        Map<String, long[]> importedFiles = loadImportedFiles();
+        Long musicianId = userRepository.findByUsername("admin").map(User::getId).orElse(1L);
+
+        // 有界队列 + CallerRunsPolicy：工作线程忙不过来时遍历线程自己处理，目录遍历不会无限堆积任务
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 4), runnable -> {
+            Thread thread = new Thread(runnable, "music-import-worker");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try (Stream<Path> paths = Files.walk(root)) {
+            Iterator<Path> iterator = paths
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".mp3"))
+                    .filter(Files::isRegularFile)
+                    .iterator();
+            while (iterator.hasNext() && !cancelled) {
+                File source = iterator.next().toFile();
+                scanned.incrementAndGet();
+                long[] state = importedFiles.get(source.getPath());
+                if (state != null && state[0] == source.length() && state[1] == source.lastModified()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                submitted.incrementAndGet();
+                pool.execute(() -> {
+                    results.add(importFile(source, musicianId));
+                    pendingResults.incrementAndGet();
+                });
+                if (pendingResults.get() >= batchSize) {
+                    flush(false);
+                }
+            }
+        } finally {
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                flush(false);
+            }
+            flush(true);
+        }
+        log.info(">>>本地音乐导入完成: 扫描 {}，导入 {}，跳过 {}，失败 {}",
+                scanned.get(), imported.get(), skipped.get(), failed.get());
+    }
+
+    // 单个文件：哈希拷贝进存储目录 + 解析元数据，在工作线程中执行，不访问数据库
+    private ImportResult importFile(File source, Long musicianId) {
+        String filename = null;
+        try {
+            filename = fileUploadUtil.importMusicFile(source);
+            Music music = new Music();
+            File stored = new File(fileUploadUtil.getMusicFilePath(filename));
+            audioMetadataService.analyze(stored)
+                    .ifPresent(metadata -> audioMetadataService.applyTo(music, metadata));
+            // 标签中没有标题/艺术家时按“标题-艺术家.mp3”解析文件名
+            String baseName = source.getName().substring(0, source.getName().lastIndexOf('.'));
+            String[] parts = baseName.split("-");
+            if (music.getTitle() == null) {
+                music.setTitle(parts.length >= 2 ? parts[0].trim() : baseName);
+            }
+            if (music.getArtist() == null) {
+                music.setArtist(parts.length >= 2 ? parts[1].trim() : "未知");
+            }
+            if (music.getDuration() == null) {
+                music.setDuration(0);
+            }
+            music.setFilePath(filename);
+            music.setMusicianId(musicianId);
+            return new ImportResult(source, music, null);
+        } catch (Exception e) {
+            // 文件已存入时释放这次导入占用的引用
+            releaseStoredFile(filename);
+            return new ImportResult(source, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    // 批量落库：music 插入与进度记录在同一事务中，崩溃后不会出现“已入库但未记录”的文件
+    private synchronized void flush(boolean all) {
+        while (pendingResults.get() >= (all ? 1 : batchSize)) {
+            List<ImportResult> batch = new ArrayList<>(batchSize);
+            ImportResult result;
+            while (batch.size() < batchSize && (result = results.poll()) != null) {
+                batch.add(result);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingResults.addAndGet(-batch.size());
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<ImportResult> batch) {
+        List<Object[]> musicRows = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>(batch.size());
+        List<String> storedFiles = new ArrayList<>();
+        for (ImportResult result : batch) {
+            File source = result.source();
+            if (result.music() != null) {
+                Music music = result.music();
+                musicRows.add(new Object[]{music.getTitle(), music.getArtist(), music.getAlbum(), music.getGenre(),
+                        music.getDuration(), music.getFilePath(), "本地导入", music.getMusicianId()});
+                itemRows.add(new Object[]{source.getPath(), source.length(), source.lastModified(),
+                        STATUS_IMPORTED, music.getFilePath(), null});
+                storedFiles.add(music.getFilePath());
+            } else {
+                itemRows.add(new Object[]{source.getPath(), source.length(), source.lastModified(),
+                        STATUS_FAILED, null, truncate(result.error(), 500)});
+            }
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (!musicRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_MUSIC_SQL, musicRows);
+                    // 波形与响度任务和歌曲记录一起提交，整批回滚时不会留下无主任务
+                    waveformService.generateAllAsync(storedFiles);
+                    loudnessService.analyzeAllAsync(storedFiles);
+                }
+                jdbcTemplate.batchUpdate(UPSERT_ITEM_SQL, itemRows);
+            });
+            imported.addAndGet(musicRows.size());
+            failed.addAndGet(itemRows.size() - musicRows.size());
+            batch.forEach(result -> importedBytes.addAndGet(result.music() != null ? result.source().length() : 0));
+        } catch (Exception e) {
+            // 整批回滚，下次运行任务时这些文件会被重新导入，先释放本次导入占用的引用
+            batch.forEach(result -> releaseStoredFile(result.music() != null ? result.music().getFilePath() : null));
+            failed.addAndGet(batch.size());
+            lastError = e.getMessage();
+            log.warn("导入批次写库失败，{} 个文件将在下次任务中重试: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    // 已成功导入的文件：路径 -> {文件大小, 修改时间}
+    private Map<String, long[]> loadImportedFiles() {
+        Map<String, long[]> importedFiles = new HashMap<>();
+        jdbcTemplate.query(SELECT_IMPORTED_SQL, rs -> {
+            importedFiles.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+        });
+        return importedFiles;
+    }
+
+    private void releaseStoredFile(String filename) {
+        if (filename == null) {
+            return;
+        }
+        try {
+            fileUploadUtil.deleteMusicFile(filename);
+        } catch (Exception e) {
+            log.warn("释放导入文件引用失败: {}", filename, e);
+        }
+    }
+
+    private String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    // 任务状态
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("sourceDir", sourceDir != null ? sourceDir : defaultSourceDir);
+        status.put("startTime", startTime);
+        status.put("finishTime", finishTime);
+        status.put("scanned", scanned.get());
+        status.put("skipped", skipped.get());
+        status.put("submitted", submitted.get());
+        status.put("imported", imported.get());
+        status.put("failed", failed.get());
+        status.put("inProgress", submitted.get() - imported.get() - failed.get());
+        status.put("importedBytes", importedBytes.get());
+        if (startTime != null) {
+            LocalDateTime end = finishTime != null ? finishTime : LocalDateTime.now();
+            double seconds = Math.max(1, Duration.between(startTime, end).toMillis()) / 1000.0;
+            status.put("filesPerSecond", Math.round(imported.get() / seconds * 10) / 10.0);
+        }
+        status.put("workers", workers);
+        status.put("batchSize", batchSize);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private record ImportResult(File source, Music music, String error) {
+    }
+}
@@ -2,7 +2,9 @@ package com.music.service;
 
 import com.music.entity.Music;
 import com.music.repository.MusicRepository;
+import com.music.service.EngagementCounterService.Counter;
 import com.music.util.FileUploadUtil;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -22,17 +24,46 @@ public class MusicService {
     @Autowired
     private FileUploadUtil fileUploadUtil;
 
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private AudioMetadataService audioMetadataService;
+
+    @Autowired
+    private WaveformService waveformService;
+
+    @Autowired
+    private LoudnessService loudnessService;
+
+    @Autowired
+    private StorageTierService storageTierService;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
     // 上传音乐
     @CacheEvict(value = "musicList", allEntries = true)
     public Music uploadMusic(Music music, MultipartFile musicFile, MultipartFile coverFile) throws IOException {
         // 上传音乐文件
         String musicFilePath = fileUploadUtil.uploadMusicFile(musicFile);
+        return uploadMusic(music, musicFilePath, coverFile);
+    }
+
+    // 上传音乐（音乐文件已通过分片上传存入音乐目录）
+    @CacheEvict(value = "musicList", allEntries = true)
+    public Music uploadMusic(Music music, String musicFilePath, MultipartFile coverFile) throws IOException {
         music.setFilePath(musicFilePath);
 
+        // 解析时长与标签并生成帧索引，用户填写的信息优先
+        audioMetadataService.analyze(getMusicFile(musicFilePath))
+                .ifPresent(metadata -> audioMetadataService.applyTo(music, metadata));
+
         // 上传封面文件
         if (coverFile != null && !coverFile.isEmpty()) {
             String coverFilePath = fileUploadUtil.uploadCoverFile(coverFile);
             music.setCoverPath(coverFilePath);
+            imageVariantService.generateAsync("cover", coverFilePath);
         }
 
         // 设置默认值
@@ -43,7 +74,11 @@ public class MusicService {
         music.setShareCount(0);
         music.setStatus(0); // 待审核
 
-        return musicRepository.save(music);
+        Music saved = musicRepository.save(music);
+        // 记录保存后入队，由后台任务生成波形、分析响度（结果按 file_path 回写）
+        waveformService.generateAsync(musicFilePath);
+        loudnessService.analyzeAsync(musicFilePath);
+        return saved;
     }
 
     // 获取音乐列表
@@ -80,29 +115,24 @@ public class MusicService {
         return musicRepository.findByMusicianId(musicianId);
     }
 
-    // 更新音乐播放量
-    public void updatePlayCount(Long musicId) {
-        Optional<Music> optionalMusic = musicRepository.findById(musicId);
-        if (optionalMusic.isPresent()) {
-            Music music = optionalMusic.get();
-            music.setPlayCount(music.getPlayCount() + 1);
-            musicRepository.save(music);
-        }
+    // 计数（播放、下载、收藏）包含尚未落库增量的副本；不修改实体本身，避免被当作脏数据写回
+    public Music withPendingCounts(Music music) {
+        Music copy = new Music();
+        BeanUtils.copyProperties(music, copy);
+        copy.setPlayCount(engagementCounterService.getCurrent(Counter.MUSIC_PLAY, music.getId(), music.getPlayCount()));
+        copy.setDownloadCount(engagementCounterService.getCurrent(Counter.MUSIC_DOWNLOAD, music.getId(), music.getDownloadCount()));
+        copy.setLikeCount(engagementCounterService.getCurrent(Counter.MUSIC_LIKE, music.getId(), music.getLikeCount()));
+        return copy;
     }
 
-    // 更新音乐下载量
+    // 更新音乐下载量（内存累加，批量落库）
     public void updateDownloadCount(Long musicId) {
-        Optional<Music> optionalMusic = musicRepository.findById(musicId);
-        if (optionalMusic.isPresent()) {
-            Music music = optionalMusic.get();
-            music.setDownloadCount(music.getDownloadCount() + 1);
-            musicRepository.save(music);
-        }
+        engagementCounterService.increment(Counter.MUSIC_DOWNLOAD, musicId);
     }
 
-    // 获取音乐文件
+    // 获取音乐文件（已归档的冷门文件先解压回存储目录）
     public File getMusicFile(String filePath) {
-        return new File(fileUploadUtil.getMusicFilePath(filePath));
+        return storageTierService.getMusicFile(filePath);
     }
 
     // 获取封面文件
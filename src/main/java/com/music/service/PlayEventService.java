@@ -0,0 +1,120 @@
+package com.music.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 播放事件异步写入：播放量交给计数合并，播放记录入队后批量插入
+@Service
+@Slf4j
+public class PlayEventService {
+    private static final String INSERT_PLAY_RECORD_SQL =
+            "INSERT INTO play_record (user_id, music_id, play_time, play_duration) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Value("${play-event.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${play-event.batch-size:500}")
+    private int batchSize;
+
+    private BlockingQueue<PlayEvent> recordQueue;
+
+    // 监控指标
+    private final AtomicLong acceptedPlays = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void init() {
+        recordQueue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    // 记录一次播放，userId 为空表示匿名播放（只计播放量，不写播放历史）
+    public void recordPlay(Long musicId, Long userId, Integer playDuration) {
+        acceptedPlays.incrementAndGet();
+        engagementCounterService.increment(EngagementCounterService.Counter.MUSIC_PLAY, musicId);
+        if (userId != null) {
+            PlayEvent event = new PlayEvent(userId, musicId, LocalDateTime.now(), playDuration);
+            if (!recordQueue.offer(event)) {
+                droppedRecords.incrementAndGet();
+            }
+        }
+    }
+
+    // 尚未落库的播放量增量
+    public long getPendingPlayCount(Long musicId) {
+        return engagementCounterService.getPending(EngagementCounterService.Counter.MUSIC_PLAY, musicId);
+    }
+
+    @Scheduled(fixedDelayString = "${play-event.flush-interval-ms:1000}")
+    public void flush() {
+        long start = System.currentTimeMillis();
+        flushPlayRecords();
+        lastFlushMillis = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void flushPlayRecords() {
+        List<PlayEvent> events = new ArrayList<>(batchSize);
+        while (recordQueue.drainTo(events, batchSize) > 0) {
+            List<Object[]> batch = new ArrayList<>(events.size());
+            for (PlayEvent event : events) {
+                batch.add(new Object[]{event.userId(), event.musicId(), Timestamp.valueOf(event.playTime()), event.playDuration()});
+            }
+            try {
+                jdbcTemplate.batchUpdate(INSERT_PLAY_RECORD_SQL, batch);
+                flushedRecords.addAndGet(batch.size());
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                failedRecords.addAndGet(batch.size());
+                log.warn("播放记录批量写入失败，丢弃 {} 条: {}", batch.size(), e.getMessage());
+            }
+            events.clear();
+        }
+    }
+
+    // 管道运行指标
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acceptedPlays", acceptedPlays.get());
+        stats.put("queuedRecords", recordQueue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("droppedRecords", droppedRecords.get());
+        stats.put("flushedRecords", flushedRecords.get());
+        stats.put("failedRecords", failedRecords.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    private record PlayEvent(Long userId, Long musicId, LocalDateTime playTime, Integer playDuration) {
+    }
+}
@@ -5,6 +5,7 @@ import com.music.entity.Playlist;
 import com.music.entity.User;
 import com.music.repository.PlaylistRepository;
 import com.music.dto.PlaylistDTO;
+import com.music.service.EngagementCounterService.Counter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +20,9 @@ public class PlaylistService {
     @Autowired
     private PlaylistRepository playlistRepository;
 
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
     public Playlist createPlaylist(Playlist playlist) {
         return playlistRepository.save(playlist);
     }
@@ -43,15 +47,22 @@ public class PlaylistService {
         return playlistRepository.save(playlist);
     }
 
+    // 转换为DTO，播放次数包含尚未落库的增量
+    public PlaylistDTO toDTO(Playlist playlist) {
+        PlaylistDTO dto = PlaylistDTO.fromPlaylist(playlist);
+        dto.setPlayCount(engagementCounterService.getCurrent(Counter.PLAYLIST_PLAY, playlist.getId(), playlist.getPlayCount()));
+        return dto;
+    }
+
     public List<PlaylistDTO> getMyPlaylistsDTO(Long userId) {
         return getMyPlaylists(userId).stream()
-                .map(PlaylistDTO::fromPlaylist)
+                .map(this::toDTO)
                 .collect(Collectors.toList());
     }
 
     public List<PlaylistDTO> getPublicPlaylistsDTO() {
         return getPublicPlaylists().stream()
-                .map(PlaylistDTO::fromPlaylist)
+                .map(this::toDTO)
                 .collect(Collectors.toList());
     }
 
@@ -92,10 +103,9 @@ public class PlaylistService {
 
     // 增加歌单播放次数
     public void incrementPlayCount(Long playlistId) {
-        Playlist playlist = playlistRepository.findById(playlistId)
-                .orElseThrow(() -> new RuntimeException("Playlist not found"));
-        
-        playlist.setPlayCount(playlist.getPlayCount() + 1);
-        playlistRepository.save(playlist);
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new RuntimeException("Playlist not found");
+        }
+        engagementCounterService.increment(Counter.PLAYLIST_PLAY, playlistId);
     }
 }
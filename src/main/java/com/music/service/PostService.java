@@ -2,10 +2,9 @@ package com.music.service;
 
 import com.music.dto.PostDTO;
 import com.music.entity.Post;
-import com.music.entity.PostLike;
 import com.music.entity.User;
-import com.music.repository.PostLikeRepository;
 import com.music.repository.PostRepository;
+import com.music.service.EngagementCounterService.Counter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,9 +21,12 @@ import java.util.stream.Collectors;
 public class PostService {
     @Autowired
     private PostRepository postRepository;
-    
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
     @Autowired
-    private PostLikeRepository postLikeRepository;
+    private LikeService likeService;
     
     public Post createPost(Post post) {
         // 检查用户是否为管理员，如果是则自动通过审核
@@ -84,11 +87,11 @@ public class PostService {
             posts = postRepository.findAllWithUser(pageable);
         }
         
+        // 整页的点赞状态一次查询
+        Set<Long> likedPostIds = likeService.getLikedPostIds(currentUserId,
+                posts.stream().map(Post::getId).collect(Collectors.toList()));
         return posts.stream()
-                .map(post -> {
-                    boolean isLiked = postLikeRepository.existsByUserIdAndPostId(currentUserId, post.getId());
-                    return PostDTO.fromPost(post, isLiked);
-                })
+                .map(post -> toDTO(post, likedPostIds.contains(post.getId())))
                 .collect(Collectors.toList());
     }
     
@@ -96,10 +99,7 @@ public class PostService {
     public Optional<PostDTO> getPostWithLikeStatus(Long postId, Long currentUserId, boolean isAdmin) {
         return postRepository.findById(postId)
                 .filter(post -> isAdmin || post.getStatus() == 2) // 非管理员只能查看已通过审核的动态
-                .map(post -> {
-                    boolean isLiked = postLikeRepository.existsByUserIdAndPostId(currentUserId, post.getId());
-                    return PostDTO.fromPost(post, isLiked);
-                });
+                .map(post -> toDTO(post, likeService.isPostLikedByUser(currentUserId, post.getId())));
     }
     
     // 分页查询（返回Page对象）
@@ -108,10 +108,10 @@ public class PostService {
     }
     
     public void sharePost(Long postId) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new IllegalArgumentException("Post not found"));
-        post.setShareCount(post.getShareCount() + 1);
-        postRepository.save(post);
+        if (!postRepository.existsById(postId)) {
+            throw new IllegalArgumentException("Post not found");
+        }
+        engagementCounterService.increment(Counter.POST_SHARE, postId);
     }
     
     // 获取待审核的动态
@@ -148,18 +148,8 @@ public class PostService {
             throw new IllegalArgumentException("Cannot like a post that is not approved");
         }
         
-        // 检查用户是否已经点赞
-        if (!postLikeRepository.existsByUserIdAndPostId(user.getId(), postId)) {
-            // 创建点赞记录
-            PostLike postLike = new PostLike();
-            postLike.setUser(user);
-            postLike.setPost(post);
-            postLikeRepository.save(postLike);
-            
-            // 更新动态的点赞数
-            post.setLikeCount(post.getLikeCount() + 1);
-            postRepository.save(post);
-        }
+        // 幂等：已点赞时不重复记录，点赞数只在确实新增记录时累加
+        likeService.setPostLike(user, postId, true);
     }
     
     // 取消点赞动态
@@ -173,17 +163,15 @@ public class PostService {
             throw new IllegalArgumentException("Cannot unlike a post that is not approved");
         }
         
-        // 检查用户是否已经点赞
-        postLikeRepository.findByUserIdAndPostId(user.getId(), postId)
-                .ifPresent(postLike -> {
-                    // 删除点赞记录
-                    postLikeRepository.delete(postLike);
-                    
-                    // 更新动态的点赞数
-                    if (post.getLikeCount() > 0) {
-                        post.setLikeCount(post.getLikeCount() - 1);
-                        postRepository.save(post);
-                    }
-                });
-    }
-}
\ No newline at end of file
+        // 幂等：未点赞时不做任何修改
+        likeService.setPostLike(user, postId, false);
+    }
+    
+    // 转换为DTO，点赞数与分享数包含尚未落库的增量
+    private PostDTO toDTO(Post post, boolean isLiked) {
+        PostDTO dto = PostDTO.fromPost(post, isLiked);
+        dto.setLikeCount(engagementCounterService.getCurrent(Counter.POST_LIKE, post.getId(), post.getLikeCount()));
+        dto.setShareCount(engagementCounterService.getCurrent(Counter.POST_SHARE, post.getId(), post.getShareCount()));
+        return dto;
+    }
+}
@@ -0,0 +1,246 @@
+package com.music.service;
+
+import com.music.util.Mp3FrameIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 试听片段：借助帧索引在帧边界上截取原 MP3 的一段（默认从 30 秒处截取 30 秒），直接拷贝字节不重新编码；
+// 片段缓存在原文件旁（原文件名.preview-起点-时长.mp3），首次请求时生成，同一片段的并发请求共用一次生成；
+// 事件循环线程通过 getPreviewIfReady 提交到后台线程生成，不等待
+@Service
+@Slf4j
+public class PreviewService {
+    @Autowired
+    private AudioMetadataService audioMetadataService;
+
+    @Value("${media.preview.start-seconds:30}")
+    private int startSeconds;
+
+    @Value("${media.preview.duration-seconds:30}")
+    private int durationSeconds;
+
+    // 后台生成的线程数与等待队列长度，队列满时本次不生成，客户端重试时再提交
+    @Value("${media.preview.workers:1}")
+    private int workers;
+
+    @Value("${media.preview.queue-capacity:200}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final ConcurrentHashMap<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+
+    // 无法生成片段（非 MP3 或文件损坏）的片段路径；存储文件名按内容寻址，结果不会变化
+    private final Set<String> unavailableFiles = ConcurrentHashMap.newKeySet();
+
+    // 监控指标
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private final AtomicLong fullTrackBytes = new AtomicLong();
+    private final AtomicLong unavailable = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "preview-generator");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 获取试听片段，无法建立帧索引（非 MP3 或文件损坏）时返回空
+    public Optional<File> getPreview(File audioFile) throws IOException {
+        File preview = getPreviewFile(audioFile);
+        if (!preview.exists() && unavailableFiles.contains(preview.getPath())) {
+            preview = null;
+        } else if (!preview.exists()) {
+            String key = preview.getPath();
+            CompletableFuture<File> created = new CompletableFuture<>();
+            CompletableFuture<File> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                preview = await(existing);
+            } else {
+                try {
+                    preview = createPreview(audioFile, preview);
+                    created.complete(preview);
+                } catch (IOException | RuntimeException e) {
+                    created.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            }
+        }
+        if (preview == null) {
+            unavailable.incrementAndGet();
+            return Optional.empty();
+        }
+        return Optional.of(served(audioFile, preview));
+    }
+
+    // 不等待的版本（供事件循环线程使用）：片段已生成时返回，否则提交后台生成并返回空，调用方让客户端稍后重试
+    public Optional<File> getPreviewIfReady(File audioFile) {
+        File preview = getPreviewFile(audioFile);
+        if (preview.exists()) {
+            return Optional.of(served(audioFile, preview));
+        }
+        if (!unavailableFiles.contains(preview.getPath())) {
+            submit(audioFile, preview);
+        }
+        return Optional.empty();
+    }
+
+    // 是否已确认无法生成试听片段
+    public boolean isUnavailable(File audioFile) {
+        return unavailableFiles.contains(getPreviewFile(audioFile).getPath());
+    }
+
+    // 片段文件与原文件放在同一目录，随原文件一起删除
+    public File getPreviewFile(File audioFile) {
+        return new File(audioFile.getParentFile(),
+                audioFile.getName() + ".preview-" + startSeconds + "-" + durationSeconds + ".mp3");
+    }
+
+    // 删除原文件的所有试听片段（包括按旧配置生成的）
+    public void deletePreviews(File audioFile) {
+        File dir = audioFile.getParentFile();
+        if (dir == null || !dir.isDirectory()) {
+            return;
+        }
+        try (DirectoryStream<Path> previews = Files.newDirectoryStream(dir.toPath(), audioFile.getName() + ".preview-*.mp3")) {
+            for (Path preview : previews) {
+                Files.deleteIfExists(preview);
+            }
+        } catch (IOException e) {
+            log.warn("删除试听片段失败: {}: {}", audioFile.getName(), e.getMessage());
+        }
+    }
+
+    private File served(File audioFile, File preview) {
+        served.incrementAndGet();
+        servedBytes.addAndGet(preview.length());
+        fullTrackBytes.addAndGet(audioFile.length());
+        return preview;
+    }
+
+    // 提交后台生成，同一片段已在生成时不重复提交
+    private void submit(File audioFile, File preview) {
+        String key = preview.getPath();
+        CompletableFuture<File> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, created) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(createPreview(audioFile, preview));
+                } catch (Throwable e) {
+                    log.warn("生成试听片段失败: {}: {}", audioFile.getName(), e.getMessage());
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+    }
+
+    // 按帧索引截取片段；歌曲短于“起点 + 时长”时向前移动起点，短于片段时长时取整首
+    private File createPreview(File audioFile, File preview) throws IOException {
+        Optional<Mp3FrameIndex> optionalIndex = audioMetadataService.getFrameIndex(audioFile);
+        if (optionalIndex.isEmpty()) {
+            unavailableFiles.add(preview.getPath());
+            return null;
+        }
+        Mp3FrameIndex index = optionalIndex.get();
+        long durationMillis = durationSeconds * 1000L;
+        long startMillis = Math.max(0, Math.min(startSeconds * 1000L, index.getDurationMillis() - durationMillis));
+        long start = index.offsetAt(startMillis);
+        long end = index.offsetAt(startMillis + durationMillis);
+
+        Path temp = Files.createTempFile(preview.getParentFile().toPath(), ".preview-", ".tmp");
+        try {
+            try (FileChannel source = FileChannel.open(audioFile.toPath(), StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = start;
+                while (position < end) {
+                    position += source.transferTo(position, end - position, target);
+                }
+            }
+            try {
+                Files.move(temp, preview.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, preview.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        generated.incrementAndGet();
+        log.debug("生成试听片段: {} ({} - {} 字节)", preview.getName(), start, end);
+        return preview;
+    }
+
+    private File await(CompletableFuture<File> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
+
+    // 试听运行指标，egressRatio 为试听流量占同样次数完整播放流量的比例
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("startSeconds", startSeconds);
+        stats.put("durationSeconds", durationSeconds);
+        stats.put("generated", generated.get());
+        stats.put("served", served.get());
+        stats.put("unavailable", unavailable.get());
+        stats.put("rejected", rejected.get());
+        stats.put("servedBytes", servedBytes.get());
+        stats.put("fullTrackBytes", fullTrackBytes.get());
+        stats.put("egressRatio", fullTrackBytes.get() > 0
+                ? Math.round(servedBytes.get() * 1000.0 / fullTrackBytes.get()) / 1000.0 : null);
+        return stats;
+    }
+}
@@ -0,0 +1,375 @@
+package com.music.service;
+
+import com.music.util.FileUploadUtil;
+import com.music.util.Mp3FrameIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// 存储巡检：找出无记录引用的孤儿文件和已丢失的文件，默认只输出报告
+@Service
+@Slf4j
+public class StorageScrubberService {
+    private static final String[] STORE_TYPES = {"music", "cover", "image", "video", "avatar"};
+    // 报告中每类问题最多列出的文件数
+    private static final int SAMPLE_LIMIT = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    @Value("${media.scrubber.enabled:true}")
+    private boolean enabled;
+
+    // 定时任务默认只报告不删除
+    @Value("${media.scrubber.dry-run:true}")
+    private boolean scheduledDryRun;
+
+    @Value("${media.scrubber.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${media.scrubber.page-size:1000}")
+    private int pageSize;
+
+    @Value("${media.scrubber.delete-batch-size:100}")
+    private int deleteBatchSize;
+
+    @Value("${media.scrubber.delete-batch-pause-ms:500}")
+    private long deleteBatchPauseMs;
+
+    // 一个线程执行巡检任务，一个线程并行扫描数据库
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "storage-scrubber");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile Map<String, Object> lastReport;
+
+    // 进度
+    private final AtomicLong scannedFiles = new AtomicLong();
+    private final AtomicLong scannedRows = new AtomicLong();
+    private final AtomicLong reclaimedFiles = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    @Scheduled(cron = "${media.scrubber.cron:0 30 4 * * ?}")
+    public void scheduledScrub() {
+        if (enabled) {
+            start(scheduledDryRun);
+        }
+    }
+
+    // 启动一次巡检（后台执行，立即返回）；已有巡检在运行时返回 false
+    public synchronized boolean start(boolean dryRun) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        cancelled = false;
+        scannedFiles.set(0);
+        scannedRows.set(0);
+        reclaimedFiles.set(0);
+        reclaimedBytes.set(0);
+        executor.execute(() -> {
+            LocalDateTime startTime = LocalDateTime.now();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("dryRun", dryRun);
+            report.put("startTime", startTime);
+            try {
+                scrub(dryRun, report);
+            } catch (Exception e) {
+                report.put("error", e.getMessage());
+                log.error("存储巡检失败", e);
+            } finally {
+                report.put("finishTime", LocalDateTime.now());
+                lastReport = report;
+                running = false;
+            }
+        });
+        return true;
+    }
+
+    // 请求停止当前巡检，正在删除的批次结束后退出
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("scannedFiles", scannedFiles.get());
+        status.put("scannedRows", scannedRows.get());
+        status.put("reclaimedFiles", reclaimedFiles.get());
+        status.put("reclaimedBytes", reclaimedBytes.get());
+        status.put("lastReport", lastReport);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelled = true;
+        executor.shutdownNow();
+    }
+
+    private void scrub(boolean dryRun, Map<String, Object> report) throws IOException, InterruptedException {
+        log.info(">>>开始存储巡检（dryRun={}）", dryRun);
+        long graceCutoff = System.currentTimeMillis() - graceHours * 3600_000L;
+        CompletableFuture<Map<String, Set<String>>> references = CompletableFuture.supplyAsync(this::scanReferences, executor);
+
+        // 各存储目录中实际存在的主文件名，以及超过保留期的候选文件
+        Map<String, Set<String>> storedNames = new HashMap<>();
+        Map<String, List<Path>> candidates = new HashMap<>();
+        for (String type : STORE_TYPES) {
+            Set<String> names = new HashSet<>();
+            List<Path> old = new ArrayList<>();
+            walkStore(type, names, old, graceCutoff);
+            storedNames.put(type, names);
+            candidates.put(type, old);
+        }
+
+        Map<String, Set<String>> referenced;
+        try {
+            referenced = references.get();
+        } catch (ExecutionException e) {
+            throw new IOException("扫描数据库引用失败: " + e.getCause().getMessage(), e.getCause());
+        }
+        if (cancelled) {
+            report.put("cancelled", true);
+            return;
+        }
+        // 同一文件名被任意一类记录引用即视为在用，宁可漏删也不误删
+        Set<String> allReferenced = new HashSet<>();
+        referenced.values().forEach(allReferenced::addAll);
+
+        List<String[]> orphans = new ArrayList<>();
+        long orphanBytes = 0;
+        for (String type : STORE_TYPES) {
+            Set<String> oldNames = new HashSet<>();
+            candidates.get(type).forEach(path -> oldNames.add(path.getFileName().toString()));
+            for (Path path : candidates.get(type)) {
+                String base = getBaseName(path.getFileName().toString());
+                // 派生文件跟随主文件：主文件还在保留期内时不处理
+                boolean primaryYoung = storedNames.get(type).contains(base) && !oldNames.contains(base);
+                if (!allReferenced.contains(base) && !primaryYoung) {
+                    orphans.add(new String[]{type, path.toString()});
+                    orphanBytes += sizeOf(path);
+                }
+            }
+        }
+
+        Map<String, Object> missing = new LinkedHashMap<>();
+        long missingCount = 0;
+        for (String type : STORE_TYPES) {
+            List<String> names = referenced.getOrDefault(type, Set.of()).stream()
+                    .filter(name -> !storedNames.get(type).contains(name))
+                    // 已归档的冷门音乐不算缺失（见 StorageTierService）
+                    .filter(name -> !"music".equals(type) || !fileUploadUtil.getMusicArchiveFile(name).isFile())
+                    .sorted()
+                    .toList();
+            if (!names.isEmpty()) {
+                missing.put(type, names.subList(0, Math.min(SAMPLE_LIMIT, names.size())));
+                missingCount += names.size();
+            }
+        }
+
+        report.put("scannedFiles", scannedFiles.get());
+        report.put("scannedRows", scannedRows.get());
+        report.put("referencedFiles", allReferenced.size());
+        report.put("orphanFiles", orphans.size());
+        report.put("orphanBytes", orphanBytes);
+        report.put("orphanSamples", orphans.stream().limit(SAMPLE_LIMIT).map(orphan -> orphan[1]).toList());
+        report.put("missingFiles", missingCount);
+        report.put("missingSamples", missing);
+        if (missingCount > 0) {
+            log.warn("存储巡检发现 {} 个记录引用的文件不存在", missingCount);
+        }
+
+        if (!dryRun) {
+            reclaim(orphans, LocalDateTime.now().minusHours(graceHours));
+        }
+        report.put("reclaimedFiles", reclaimedFiles.get());
+        report.put("reclaimedBytes", reclaimedBytes.get());
+        log.info(">>>存储巡检完成：文件 {} 个，孤儿文件 {} 个（{} 字节），缺失 {} 个，已回收 {} 个",
+                scannedFiles.get(), orphans.size(), orphanBytes, missingCount, reclaimedFiles.get());
+    }
+
+    // 流式遍历存储目录：主文件名记入 names，修改时间早于 graceCutoff 的文件（含派生文件和残留临时文件）记入 candidates
+    private void walkStore(String type, Set<String> names, List<Path> candidates, long graceCutoff) throws IOException {
+        Path root = Paths.get(fileUploadUtil.getUploadPath(type));
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.forEach(path -> {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // 遍历过程中被删除的文件
+                    return;
+                }
+                if (!attributes.isRegularFile()) {
+                    return;
+                }
+                scannedFiles.incrementAndGet();
+                String name = path.getFileName().toString();
+                if (!name.startsWith(".") && getBaseName(name).equals(name)) {
+                    names.add(name);
+                }
+                if (attributes.lastModifiedTime().toMillis() < graceCutoff) {
+                    candidates.add(path);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 按主键分页扫描引用文件的字段，返回各存储分类下被引用的文件名
+    private Map<String, Set<String>> scanReferences() {
+        Map<String, Set<String>> referenced = new HashMap<>();
+        for (String type : STORE_TYPES) {
+            referenced.put(type, new HashSet<>());
+        }
+        scanTable("music", "file_path, cover_path", row -> {
+            addName(referenced.get("music"), row[0]);
+            addName(referenced.get("cover"), row[1]);
+        });
+        scanTable("playlist", "cover_path", row -> addName(referenced.get("cover"), row[0]));
+        scanTable("posts", "image_urls, video_url", row -> {
+            if (row[0] != null) {
+                for (String url : row[0].split(",")) {
+                    addName(referenced.get("image"), url);
+                }
+            }
+            addName(referenced.get("video"), row[1]);
+        });
+        scanTable("`user`", "avatar", row -> addName(referenced.get("avatar"), row[0]));
+        return referenced;
+    }
+
+    private void scanTable(String table, String columns, Consumer<String[]> consumer) {
+        String sql = "SELECT id, " + columns + " FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?";
+        long lastId = 0;
+        while (!cancelled) {
+            AtomicLong maxId = new AtomicLong(lastId);
+            AtomicInteger rows = new AtomicInteger();
+            jdbcTemplate.query(sql, rs -> {
+                maxId.set(rs.getLong(1));
+                int count = rs.getMetaData().getColumnCount();
+                String[] values = new String[count - 1];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rs.getString(i + 2);
+                }
+                consumer.accept(values);
+                rows.incrementAndGet();
+            }, lastId, pageSize);
+            scannedRows.addAndGet(rows.get());
+            if (rows.get() < pageSize) {
+                return;
+            }
+            lastId = maxId.get();
+        }
+    }
+
+    // 字段里可能是文件名，也可能是访问地址（/api/files/image/xxx.jpg），统一取最后一段
+    private void addName(Set<String> names, String value) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        String trimmed = value.trim();
+        int query = trimmed.indexOf('?');
+        if (query >= 0) {
+            trimmed = trimmed.substring(0, query);
+        }
+        String name = trimmed.substring(trimmed.lastIndexOf('/') + 1);
+        if (!name.isEmpty()) {
+            names.add(name);
+        }
+    }
+
+    // 派生文件（缩略图 name.w240.jpg、帧索引 name.idx、试听片段 name.preview-30-30.mp3）归属的主文件名；
+    // 主文件名本身只有一个扩展名，以 . 开头的是上传或生成中途残留的临时文件，原样返回
+    private String getBaseName(String name) {
+        if (name.startsWith(".")) {
+            return name;
+        }
+        if (name.endsWith(Mp3FrameIndex.INDEX_SUFFIX)) {
+            return name.substring(0, name.length() - Mp3FrameIndex.INDEX_SUFFIX.length());
+        }
+        int first = name.indexOf('.');
+        int second = first >= 0 ? name.indexOf('.', first + 1) : -1;
+        return second > 0 ? name.substring(0, second) : name;
+    }
+
+    // 分批删除孤儿文件，每批之间暂停；主文件通过 FileUploadUtil 删除，同时清理引用计数记录和派生文件
+    private void reclaim(List<String[]> orphans, LocalDateTime idleBefore) throws InterruptedException {
+        int inBatch = 0;
+        for (String[] orphan : orphans) {
+            if (cancelled) {
+                return;
+            }
+            Path path = Paths.get(orphan[1]);
+            String name = path.getFileName().toString();
+            long size = sizeOf(path);
+            boolean deleted;
+            if (getBaseName(name).equals(name) && !name.startsWith(".")) {
+                deleted = fileUploadUtil.deleteOrphanFile(orphan[0], name, idleBefore);
+            } else {
+                try {
+                    deleted = Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除孤儿文件失败: {} {}", path, e.getMessage());
+                    deleted = false;
+                }
+            }
+            if (deleted) {
+                reclaimedFiles.incrementAndGet();
+                reclaimedBytes.addAndGet(size);
+            }
+            if (++inBatch >= deleteBatchSize) {
+                inBatch = 0;
+                Thread.sleep(deleteBatchPauseMs);
+            }
+        }
+    }
+
+    private long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.music.service;
+
+import com.music.util.FileUploadUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 音乐文件分层存储：冷门歌曲压缩归档，访问时解压恢复
+@Service
+@Slf4j
+public class StorageTierService {
+    private static final String SELECT_COLD_SQL =
+            "SELECT id, file_path FROM music m WHERE id > ? AND play_count <= ? AND create_time < ? " +
+                    "AND NOT EXISTS (SELECT 1 FROM play_record r WHERE r.music_id = m.id AND r.play_time >= ?) " +
+                    "ORDER BY id LIMIT ?";
+    // 共用同一文件的歌曲中是否有仍然活跃的
+    private static final String COUNT_ACTIVE_SHARED_SQL =
+            "SELECT COUNT(*) FROM music m WHERE file_path = ? AND (play_count > ? OR create_time >= ? " +
+                    "OR EXISTS (SELECT 1 FROM play_record r WHERE r.music_id = m.id AND r.play_time >= ?))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    // 是否自动降级冷门文件；关闭后已归档的文件仍可正常访问
+    @Value("${media.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.tiering.cold-days:90}")
+    private int coldDays;
+
+    @Value("${media.tiering.max-play-count:100}")
+    private int maxPlayCount;
+
+    @Value("${media.tiering.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${media.tiering.page-size:500}")
+    private int pageSize;
+
+    // 单次运行最多降级的文件数
+    @Value("${media.tiering.max-files-per-run:5000}")
+    private int maxFilesPerRun;
+
+    @Value("${media.tiering.batch-size:50}")
+    private int batchSize;
+
+    @Value("${media.tiering.batch-pause-ms:1000}")
+    private long batchPauseMs;
+
+    // 一个线程执行降级任务，一个线程为独立媒体服务器在后台恢复文件
+    private final ExecutorService demoteExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-tier-demote");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final ExecutorService promoteExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-tier-promote");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 正在恢复的文件，key 为存储文件名
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile Map<String, Object> lastReport;
+
+    // 访问指标
+    private final AtomicLong hotHits = new AtomicLong();
+    private final AtomicLong archiveHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong restoreFailures = new AtomicLong();
+    private final AtomicLong restoreMillis = new AtomicLong();
+    private final AtomicLong maxRestoreMillis = new AtomicLong();
+    private final AtomicLong restoredBytes = new AtomicLong();
+    // 降级指标
+    private final AtomicLong demotedFiles = new AtomicLong();
+    private final AtomicLong demotedBytes = new AtomicLong();
+    private final AtomicLong archivedBytes = new AtomicLong();
+    private final AtomicLong demoteFailures = new AtomicLong();
+
+    // 获取音乐文件：只在归档目录时解压恢复后返回（阻塞调用线程），两处都没有时返回不存在的文件
+    public File getMusicFile(String filename) {
+        File file = new File(fileUploadUtil.getMusicFilePath(filename));
+        if (file.isFile()) {
+            hotHits.incrementAndGet();
+            return file;
+        }
+        if (!fileUploadUtil.getMusicArchiveFile(filename).isFile()) {
+            misses.incrementAndGet();
+            return file;
+        }
+        try {
+            promote(filename).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 已在 restore 中记录
+        }
+        return file;
+    }
+
+    // 获取音乐文件，不阻塞：文件只在归档目录时提交后台恢复并返回空，调用方稍后重试
+    public Optional<File> getMusicFileIfHot(String filename) {
+        File file = new File(fileUploadUtil.getMusicFilePath(filename));
+        if (file.isFile()) {
+            hotHits.incrementAndGet();
+            return Optional.of(file);
+        }
+        if (fileUploadUtil.getMusicArchiveFile(filename).isFile()) {
+            // 先登记再提交，同一文件在恢复完成前的重复请求不再排队
+            CompletableFuture<Boolean> created = new CompletableFuture<>();
+            CompletableFuture<Boolean> existing = inFlight.putIfAbsent(filename, created);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                return Optional.empty();
+            }
+            try {
+                promoteExecutor.execute(() -> runPromote(filename, created));
+            } catch (RejectedExecutionException e) {
+                // 服务关闭中
+                inFlight.remove(filename, created);
+                created.complete(false);
+            }
+        } else if (file.isFile()) {
+            // 两次检查之间恢复刚好完成
+            hotHits.incrementAndGet();
+            return Optional.of(file);
+        } else {
+            misses.incrementAndGet();
+        }
+        return Optional.empty();
+    }
+
+    // 启动一次降级（后台执行，立即返回）；已有任务在运行时返回 false
+    public synchronized boolean start() {
+        if (running) {
+            return false;
+        }
+        running = true;
+        cancelled = false;
+        demoteExecutor.execute(() -> {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startTime", LocalDateTime.now());
+            try {
+                demote(report);
+            } catch (Exception e) {
+                report.put("error", e.getMessage());
+                log.error("冷门文件降级失败", e);
+            } finally {
+                report.put("finishTime", LocalDateTime.now());
+                lastReport = report;
+                running = false;
+            }
+        });
+        return true;
+    }
+
+    @Scheduled(cron = "${media.tiering.cron:0 0 5 * * ?}")
+    public void scheduledDemote() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    // 请求停止当前降级任务，正在处理的文件完成后退出
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelled = true;
+        demoteExecutor.shutdownNow();
+        promoteExecutor.shutdownNow();
+    }
+
+    // 分层存储运行指标：各层命中次数、恢复耗时、降级的文件数与节省的空间
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running);
+        stats.put("hotHits", hotHits.get());
+        stats.put("archiveHits", archiveHits.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("misses", misses.get());
+        stats.put("restoreFailures", restoreFailures.get());
+        stats.put("restoredBytes", restoredBytes.get());
+        long hits = archiveHits.get();
+        stats.put("avgRestoreMillis", hits > 0 ? restoreMillis.get() / hits : 0);
+        stats.put("maxRestoreMillis", maxRestoreMillis.get());
+        stats.put("demotedFiles", demotedFiles.get());
+        stats.put("demotedBytes", demotedBytes.get());
+        stats.put("archivedBytes", archivedBytes.get());
+        stats.put("savedBytes", demotedBytes.get() - archivedBytes.get());
+        stats.put("demoteFailures", demoteFailures.get());
+        stats.put("lastReport", lastReport);
+        return stats;
+    }
+
+    // 恢复一个文件，同一文件的并发请求共用一个任务
+    private CompletableFuture<Boolean> promote(String filename) {
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(filename, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        runPromote(filename, created);
+        return created;
+    }
+
+    private void runPromote(String filename, CompletableFuture<Boolean> future) {
+        try {
+            future.complete(restore(filename));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(filename, future);
+        }
+    }
+
+    private boolean restore(String filename) throws IOException {
+        long start = System.currentTimeMillis();
+        try {
+            boolean restored = fileUploadUtil.restoreMusicFile(filename);
+            if (restored) {
+                long elapsed = System.currentTimeMillis() - start;
+                archiveHits.incrementAndGet();
+                restoreMillis.addAndGet(elapsed);
+                maxRestoreMillis.accumulateAndGet(elapsed, Math::max);
+                restoredBytes.addAndGet(new File(fileUploadUtil.getMusicFilePath(filename)).length());
+            } else if (new File(fileUploadUtil.getMusicFilePath(filename)).isFile()) {
+                // 另一个任务刚恢复完成
+                return true;
+            } else {
+                misses.incrementAndGet();
+            }
+            return restored;
+        } catch (IOException e) {
+            restoreFailures.incrementAndGet();
+            log.warn("恢复归档文件失败: {}: {}", filename, e.getMessage());
+            throw e;
+        }
+    }
+
+    private void demote(Map<String, Object> report) throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(coldDays);
+        long cutoffMillis = System.currentTimeMillis() - coldDays * 86_400_000L;
+        log.info(">>>开始冷门文件降级（{} 天无播放，播放量不超过 {}）", coldDays, maxPlayCount);
+        Set<String> seen = new HashSet<>();
+        long scanned = 0;
+        long files = 0;
+        long bytes = 0;
+        long compressed = 0;
+        int inBatch = 0;
+        long lastId = 0;
+        while (!cancelled && files < maxFilesPerRun) {
+            List<Object[]> rows = new ArrayList<>();
+            jdbcTemplate.query(SELECT_COLD_SQL, rs -> {
+                rows.add(new Object[]{rs.getLong(1), rs.getString(2)});
+            }, lastId, maxPlayCount, cutoff, cutoff, pageSize);
+            for (Object[] row : rows) {
+                if (cancelled || files >= maxFilesPerRun) {
+                    break;
+                }
+                scanned++;
+                String filename = (String) row[1];
+                if (!seen.add(filename)) {
+                    continue;
+                }
+                File file = new File(fileUploadUtil.getMusicFilePath(filename));
+                if (!file.isFile() || file.lastModified() >= cutoffMillis
+                        || jdbcTemplate.queryForObject(COUNT_ACTIVE_SHARED_SQL, Long.class,
+                        filename, maxPlayCount, cutoff, cutoff) > 0) {
+                    continue;
+                }
+                long size = file.length();
+                try {
+                    long archived = fileUploadUtil.archiveMusicFile(filename, compressionLevel);
+                    if (archived < 0) {
+                        continue;
+                    }
+                    files++;
+                    bytes += size;
+                    compressed += archived;
+                    demotedFiles.incrementAndGet();
+                    demotedBytes.addAndGet(size);
+                    archivedBytes.addAndGet(archived);
+                } catch (IOException e) {
+                    demoteFailures.incrementAndGet();
+                    log.warn("归档文件失败: {}: {}", filename, e.getMessage());
+                }
+                if (++inBatch >= batchSize) {
+                    inBatch = 0;
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+            if (rows.size() < pageSize) {
+                break;
+            }
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        report.put("cancelled", cancelled);
+        report.put("scannedRows", scanned);
+        report.put("demotedFiles", files);
+        report.put("demotedBytes", bytes);
+        report.put("archivedBytes", compressed);
+        log.info(">>>冷门文件降级完成：扫描 {} 首，归档 {} 个文件，{} 字节压缩为 {} 字节", scanned, files, bytes, compressed);
+    }
+}
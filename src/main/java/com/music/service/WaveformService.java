@@ -0,0 +1,322 @@
+package com.music.service;
+
+import com.music.util.Mp3Decoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 音频波形（峰值）预计算，多种精度保存在音频文件旁
+@Service
+@Slf4j
+public class WaveformService {
+    // 文件格式（大端）：魔数 "PEAK"、版本、点数 N、时长（毫秒），之后 N 组 [最小值, 最大值]，每个值 1 字节（-127~127）
+    private static final byte[] MAGIC = {'P', 'E', 'A', 'K'};
+    private static final int VERSION = 1;
+    private static final String PEAKS_MARK = ".peaks-";
+    private static final String PEAKS_SUFFIX = ".bin";
+    public static final String JOB_TYPE = "waveform";
+
+    @Autowired
+    private MediaJobService mediaJobService;
+
+    // FileUploadUtil 依赖本服务删除波形，StorageTierService 又依赖 FileUploadUtil，延迟注入打破循环
+    @Autowired
+    @Lazy
+    private StorageTierService storageTierService;
+
+    @Value("${media.waveform.resolutions:128,512,2048}")
+    private int[] resolutions;
+
+    @Value("${media.waveform.workers:1}")
+    private int workers;
+
+    @Value("${media.waveform.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${media.waveform.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    // 正在解码的音频文件，key 为音频路径（一次解码生成所有精度）
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong decodedFrames = new AtomicLong();
+    private final AtomicLong decodeMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(resolutions);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "waveform-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            // 解码占用 CPU，让位于请求处理线程
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        // 任务参数为存储文件名，执行时再解析（文件可能已被归档，存储目录也可能已迁移）
+        mediaJobService.register(JOB_TYPE, payload -> generateForJob(storageTierService.getMusicFile(new File(payload).getName())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 上传后按存储文件名入队，由后台任务生成所有精度的波形
+    public void generateAsync(String fileName) {
+        mediaJobService.enqueue(JOB_TYPE, fileName);
+    }
+
+    // 批量入队（导入时在批次事务中调用，与歌曲记录一起提交）
+    public void generateAllAsync(List<String> fileNames) {
+        mediaJobService.enqueueAll(JOB_TYPE, fileNames);
+    }
+
+    // 获取不少于请求点数的最接近精度的波形文件；尚未生成时提交生成并等待，超时或无法解码时返回空
+    public Optional<File> getPeaks(File audioFile, Integer points) {
+        File peaks = getPeaksFile(audioFile, selectResolution(points));
+        if (peaks.exists()) {
+            return Optional.of(peaks);
+        }
+        CompletableFuture<Boolean> future = submit(audioFile);
+        if (future == null) {
+            return Optional.empty();
+        }
+        try {
+            future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 超时的任务继续在后台执行，下次请求即可命中
+        }
+        return peaks.exists() ? Optional.of(peaks) : Optional.empty();
+    }
+
+    // 删除音频文件的所有波形
+    public void deletePeaks(File audioFile) {
+        for (int resolution : resolutions) {
+            getPeaksFile(audioFile, resolution).delete();
+        }
+    }
+
+    public File getPeaksFile(File audioFile, int points) {
+        return new File(audioFile.getParentFile(), audioFile.getName() + PEAKS_MARK + points + PEAKS_SUFFIX);
+    }
+
+    // 向上取最接近的配置精度，未指定或超过最大精度时取最大精度
+    private int selectResolution(Integer points) {
+        if (points != null && points > 0) {
+            for (int resolution : resolutions) {
+                if (resolution >= points) {
+                    return resolution;
+                }
+            }
+        }
+        return resolutions[resolutions.length - 1];
+    }
+
+    private CompletableFuture<Boolean> submit(File audioFile) {
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(audioFile.getPath(), created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        try {
+            executor.execute(() -> run(audioFile, created));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            inFlight.remove(audioFile.getPath(), created);
+            return null;
+        }
+        return created;
+    }
+
+    // 媒体任务在任务线程中生成，与请求时提交的生成共用 inFlight，同一文件不会同时解码两次；失败时抛出异常由任务重试
+    private void generateForJob(File audioFile) throws Exception {
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(audioFile.getPath(), created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+        } else {
+            run(audioFile, created);
+        }
+        try {
+            (existing != null ? existing : created).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private void run(File audioFile, CompletableFuture<Boolean> future) {
+        try {
+            future.complete(generate(audioFile));
+        } catch (Throwable e) {
+            failed.incrementAndGet();
+            log.warn("生成波形失败: {}: {}", audioFile.getName(), e.getMessage());
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(audioFile.getPath(), future);
+        }
+    }
+
+    // 解码一次，生成所有精度；所有精度都已存在时跳过
+    private boolean generate(File audioFile) throws IOException {
+        boolean complete = true;
+        for (int resolution : resolutions) {
+            complete &= getPeaksFile(audioFile, resolution).exists();
+        }
+        if (complete || !audioFile.isFile()) {
+            return complete;
+        }
+        long start = System.currentTimeMillis();
+        FramePeaks framePeaks = decode(audioFile);
+        decodeMillis.addAndGet(System.currentTimeMillis() - start);
+        if (framePeaks.count == 0) {
+            return false;
+        }
+        for (int resolution : resolutions) {
+            write(framePeaks, resolution, getPeaksFile(audioFile, resolution));
+        }
+        generated.incrementAndGet();
+        return true;
+    }
+
+    // 逐帧解码，记录每帧（所有声道）采样的最小值和最大值
+    private FramePeaks decode(File audioFile) throws IOException {
+        FramePeaks peaks = new FramePeaks();
+        Mp3Decoder.decode(audioFile, (samples, length, channels, sampleRate) -> {
+            short min = 0;
+            short max = 0;
+            for (int i = 0; i < length; i++) {
+                if (samples[i] < min) {
+                    min = samples[i];
+                } else if (samples[i] > max) {
+                    max = samples[i];
+                }
+            }
+            peaks.add(min, max, length / Math.max(1, channels), sampleRate);
+        });
+        decodedFrames.addAndGet(peaks.count);
+        return peaks;
+    }
+
+    // 把逐帧峰值合并为 points 个点，帧数少于点数时每帧一个点
+    private void write(FramePeaks framePeaks, int resolution, File target) throws IOException {
+        int points = Math.min(resolution, framePeaks.count);
+        Path temp = Files.createTempFile(target.getParentFile().toPath(), ".peaks-", ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(points);
+                out.writeInt((int) framePeaks.getDurationMillis());
+                for (int i = 0; i < points; i++) {
+                    int from = (int) ((long) i * framePeaks.count / points);
+                    int to = (int) ((long) (i + 1) * framePeaks.count / points);
+                    int min = 0;
+                    int max = 0;
+                    for (int frame = from; frame < to; frame++) {
+                        min = Math.min(min, framePeaks.min[frame]);
+                        max = Math.max(max, framePeaks.max[frame]);
+                    }
+                    out.writeByte(toByte(min));
+                    out.writeByte(toByte(max));
+                }
+            }
+            try {
+                Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 16 位采样缩放到 -127~127
+    private int toByte(int sample) {
+        return Math.max(-127, Math.min(127, Math.round(sample * 127f / Short.MAX_VALUE)));
+    }
+
+    // 波形生成运行指标
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("resolutions", resolutions);
+        stats.put("workers", workers);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("generated", generated.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("decodedFrames", decodedFrames.get());
+        stats.put("decodeMillis", decodeMillis.get());
+        return stats;
+    }
+
+    // 逐帧峰值（一首 5 分钟的歌约 1.2 万帧，几十 KB）
+    private static class FramePeaks {
+        private short[] min = new short[4096];
+        private short[] max = new short[4096];
+        private int count;
+        private long samples;
+        private int sampleRate;
+
+        private void add(short frameMin, short frameMax, int frameSamples, int frameSampleRate) {
+            if (count == min.length) {
+                min = Arrays.copyOf(min, count * 2);
+                max = Arrays.copyOf(max, count * 2);
+            }
+            min[count] = frameMin;
+            max[count] = frameMax;
+            count++;
+            samples += frameSamples;
+            if (sampleRate == 0 && frameSampleRate > 0) {
+                sampleRate = frameSampleRate;
+            }
+        }
+
+        private long getDurationMillis() {
+            return sampleRate > 0 ? samples * 1000 / sampleRate : 0;
+        }
+    }
+}
@@ -1,16 +1,44 @@
 package com.music.util;
 
+import com.music.repository.MediaBlobRepository;
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.PreviewService;
+import com.music.service.WaveformService;
 import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+// 文件存储：新文件按内容寻址（SHA-256 文件名）并引用计数，冷门音乐可压缩归档
 @Component
 public class FileUploadUtil {
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("^[0-9a-f]{64}\\.[0-9a-z]+$");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     @Value("${file.upload.music.path}")
     private String musicUploadPath;
 
@@ -26,6 +54,34 @@ public class FileUploadUtil {
     @Value("${file.upload.video.path}")
     private String videoUploadPath;
 
+    // 音乐文件归档目录（可放在更便宜的磁盘上）
+    @Value("${media.tiering.archive-path:${file.upload.path}archive/music/}")
+    private String musicArchivePath;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private WaveformService waveformService;
+
+    // 按文件名分段加锁，保证同一内容的“落盘 + 计数”与“减计数 + 删除”互斥
+    private final Object[] locks = new Object[64];
+
+    {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
     // 上传音乐文件
     public String uploadMusicFile(MultipartFile file) throws IOException {
         return uploadFile(file, musicUploadPath);
@@ -46,31 +102,99 @@ public class FileUploadUtil {
         return uploadFile(file, videoUploadPath);
     }
 
+    // 导入本地音乐文件（拷贝，源文件保留），重复导入同一文件不会再占用存储空间
+    public String importMusicFile(File source) throws IOException {
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            return storeFile(in, FilenameUtils.getExtension(source.getName()), musicUploadPath);
+        }
+    }
+
     // 上传通用文件
     public String uploadFile(MultipartFile file, String uploadPath) throws IOException {
-        // 检查目录是否存在，不存在则创建
-        File directory = new File(uploadPath);
-        if (!directory.exists()) {
-            directory.mkdirs();
+        String extension = FilenameUtils.getExtension(file.getOriginalFilename());
+        try (InputStream in = file.getInputStream()) {
+            return storeFile(in, extension, uploadPath);
         }
+    }
 
-        // 生成唯一文件名
-        String originalFilename = file.getOriginalFilename();
-        String extension = FilenameUtils.getExtension(originalFilename);
-        String uniqueFilename = UUID.randomUUID().toString() + "." + extension;
+    // 流式写入存储目录：边写临时文件边计算 SHA-256，返回存储文件名
+    public String storeFile(InputStream in, String extension, String uploadPath) throws IOException {
+        Files.createDirectories(Paths.get(uploadPath));
+        Path temp = Files.createTempFile(Paths.get(uploadPath), ".upload-", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+                Files.copy(digestIn, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return commit(temp, HexFormat.of().formatHex(digest.digest()), extension, uploadPath);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 
-        // 保存文件
-        File dest = new File(uploadPath + uniqueFilename);
-        file.transferTo(dest);
+    // 将已落盘的临时文件（如分片上传合并结果）移入存储目录，sha256 为空时重新计算
+    public String storeFile(Path source, String extension, String uploadPath, String sha256) throws IOException {
+        String hash = sha256 != null ? sha256 : sha256(source);
+        try {
+            return commit(source, hash, extension, uploadPath);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    // 根据文件类型获取存储目录
+    public String getUploadPath(String type) {
+        return switch (type) {
+            case "music" -> musicUploadPath;
+            case "cover" -> coverUploadPath;
+            case "image" -> imageUploadPath;
+            case "video" -> videoUploadPath;
+            case "avatar" -> avatarUploadPath;
+            default -> throw new IllegalArgumentException("Unsupported file type: " + type);
+        };
+    }
 
-        // 返回文件路径
-        return uniqueFilename;
+    // 是否为内容寻址存储的文件名
+    public boolean isContentAddressed(String filename) {
+        return filename != null && CONTENT_ADDRESSED_NAME.matcher(filename).matches();
     }
 
-    // 删除文件
+    // 删除文件：内容寻址的文件减少一次引用，最后一个引用释放时才删除文件
     public boolean deleteFile(String filePath, String basePath) {
-        File file = new File(basePath + filePath);
-        return file.exists() && file.delete();
+        if (!isContentAddressed(filePath)) {
+            File file = new File(basePath + filePath);
+            deleteDerivedFiles(file);
+            return file.exists() && file.delete();
+        }
+        String store = getStoreName(basePath);
+        synchronized (lockFor(store, filePath)) {
+            File file = new File(resolvePath(basePath, filePath));
+            if (mediaBlobRepository.release(store, filePath) == 0) {
+                // 没有引用记录（如手工拷入的文件），按旧逻辑直接删除
+                deleteDerivedFiles(file);
+                return file.exists() && file.delete();
+            }
+            if (mediaBlobRepository.deleteIfUnreferenced(store, filePath) > 0) {
+                deleteDerivedFiles(file);
+                file.delete();
+            }
+            return true;
+        }
+    }
+
+    // 删除没有任何业务记录引用的文件（存储巡检使用）：引用计数记录在 idleBefore 之后有变动（如刚有相同内容上传）时跳过，
+    // 返回 false；否则连同引用计数记录和派生文件一起删除
+    public boolean deleteOrphanFile(String type, String filename, LocalDateTime idleBefore) {
+        String basePath = getUploadPath(type);
+        synchronized (lockFor(type, filename)) {
+            if (isContentAddressed(filename) && mediaBlobRepository.findByStoreAndFileName(type, filename).isPresent()
+                    && mediaBlobRepository.deleteIfIdleBefore(type, filename, idleBefore) == 0) {
+                return false;
+            }
+            File file = new File(resolvePath(basePath, filename));
+            deleteDerivedFiles(file);
+            return file.delete();
+        }
     }
 
     // 删除音乐文件
@@ -95,18 +219,203 @@ public class FileUploadUtil {
 
     // 获取文件存储路径
     public String getMusicFilePath(String filename) {
-        return musicUploadPath + filename;
+        return resolvePath(musicUploadPath, filename);
     }
 
     public String getCoverFilePath(String filename) {
-        return coverUploadPath + filename;
+        return resolvePath(coverUploadPath, filename);
     }
 
     public String getImageFilePath(String filename) {
-        return imageUploadPath + filename;
+        return resolvePath(imageUploadPath, filename);
     }
 
     public String getVideoFilePath(String filename) {
-        return videoUploadPath + filename;
+        return resolvePath(videoUploadPath, filename);
+    }
+
+    public String getAvatarFilePath(String filename) {
+        return resolvePath(avatarUploadPath, filename);
+    }
+
+    // 按文件类型（同 getUploadPath）获取存储路径
+    public String getFilePath(String type, String filename) {
+        return resolvePath(getUploadPath(type), filename);
+    }
+
+    // 音乐文件的归档副本（gzip）
+    public File getMusicArchiveFile(String filename) {
+        return new File(resolvePath(musicArchivePath, filename) + ".gz");
+    }
+
+    // 把音乐文件压缩移入归档目录：先写临时文件再改名，归档副本完整落盘后才删除原文件；
+    // 原文件不存在时返回 -1，否则返回归档副本大小
+    public long archiveMusicFile(String filename, int compressionLevel) throws IOException {
+        File file = new File(getMusicFilePath(filename));
+        File archive = getMusicArchiveFile(filename);
+        // 内容寻址的文件内容由文件名决定，恢复时保留的归档副本可以直接复用，不再重新压缩
+        if (isContentAddressed(filename) && archive.isFile()) {
+            synchronized (lockFor("music", filename)) {
+                if (!file.isFile()) {
+                    return -1;
+                }
+                if (archive.isFile()) {
+                    hotTrackCache.evict(file);
+                    Files.delete(file.toPath());
+                    return archive.length();
+                }
+            }
+        }
+        Files.createDirectories(archive.getParentFile().toPath());
+        Path temp = Files.createTempFile(archive.getParentFile().toPath(), ".archive-", ".tmp");
+        try {
+            // 压缩在锁外进行，期间原文件只读，不影响播放
+            try (InputStream in = Files.newInputStream(file.toPath());
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE) {
+                     {
+                         def.setLevel(compressionLevel);
+                     }
+                 }) {
+                in.transferTo(out);
+            } catch (NoSuchFileException e) {
+                return -1;
+            }
+            synchronized (lockFor("music", filename)) {
+                // 压缩期间文件被删除（引用释放）时放弃归档
+                if (!file.isFile()) {
+                    return -1;
+                }
+                move(temp, archive.toPath());
+                hotTrackCache.evict(file);
+                Files.delete(file.toPath());
+            }
+            return archive.length();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 把归档副本解压回存储目录（归档副本保留到文件删除时清理，内容寻址的文件重新降级时直接复用）；
+    // 原文件已存在返回 true，没有归档副本返回 false
+    public boolean restoreMusicFile(String filename) throws IOException {
+        File file = new File(getMusicFilePath(filename));
+        File archive = getMusicArchiveFile(filename);
+        if (file.isFile()) {
+            return true;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), ".restore-", ".tmp");
+        try {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive.toPath()), BUFFER_SIZE)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            synchronized (lockFor("music", filename)) {
+                if (file.isFile()) {
+                    return true;
+                }
+                // 解压期间文件被删除（归档副本随之删除）时不再恢复
+                if (!archive.isFile()) {
+                    return false;
+                }
+                move(temp, file.toPath());
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 删除由原文件派生的缩略图、帧索引、试听片段、波形和归档副本，并移出热门缓存
+    private void deleteDerivedFiles(File file) {
+        imageVariantService.deleteVariants(file);
+        Mp3FrameIndex.indexFileFor(file).delete();
+        previewService.deletePreviews(file);
+        waveformService.deletePeaks(file);
+        hotTrackCache.evict(file);
+        if (file.getPath().startsWith(new File(musicUploadPath).getPath())) {
+            getMusicArchiveFile(file.getName()).delete();
+        }
+    }
+
+    // 内容寻址的文件按哈希前四位分两级目录存放，旧文件直接位于存储目录下
+    private String resolvePath(String basePath, String filename) {
+        if (!isContentAddressed(filename)) {
+            return basePath + filename;
+        }
+        return basePath + filename.substring(0, 2) + "/" + filename.substring(2, 4) + "/" + filename;
+    }
+
+    // 临时文件改名为内容哈希；内容已存在时丢弃临时文件，只增加引用计数
+    private String commit(Path temp, String sha256, String extension, String uploadPath) throws IOException {
+        String filename = sha256 + "." + normalizeExtension(extension);
+        String store = getStoreName(uploadPath);
+        synchronized (lockFor(store, filename)) {
+            Path target = Paths.get(resolvePath(uploadPath, filename));
+            long size = Files.size(temp);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                move(temp, target);
+            }
+            mediaBlobRepository.acquire(store, filename, size);
+        }
+        return filename;
+    }
+
+    // 同一文件系统内原子改名，不支持时退化为普通移动
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 存储目录对应的分类名，作为引用计数表的 store 字段
+    private String getStoreName(String uploadPath) {
+        if (uploadPath.equals(musicUploadPath)) {
+            return "music";
+        } else if (uploadPath.equals(coverUploadPath)) {
+            return "cover";
+        } else if (uploadPath.equals(imageUploadPath)) {
+            return "image";
+        } else if (uploadPath.equals(videoUploadPath)) {
+            return "video";
+        } else if (uploadPath.equals(avatarUploadPath)) {
+            return "avatar";
+        }
+        throw new IllegalArgumentException("Unknown upload path: " + uploadPath);
+    }
+
+    private Object lockFor(String store, String filename) {
+        return locks[Math.floorMod((store + "/" + filename).hashCode(), locks.length)];
+    }
+
+    // 扩展名只保留小写字母和数字，避免把用户输入带进文件名
+    private String normalizeExtension(String extension) {
+        String normalized = extension == null ? "" : extension.toLowerCase().replaceAll("[^0-9a-z]", "");
+        return normalized.isEmpty() ? "bin" : normalized;
+    }
+
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
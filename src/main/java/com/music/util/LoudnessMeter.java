@@ -0,0 +1,169 @@
+package com.music.util;
+
+import java.util.Arrays;
+
+// 积分响度测量（ITU-R BS.1770 / EBU R128），按帧喂入交错的 16 位 PCM
+public class LoudnessMeter {
+    private static final double ABSOLUTE_GATE_LUFS = -70.0;
+    private static final double RELATIVE_GATE_LU = -10.0;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;
+
+    private int sampleRate;
+    private int channels;
+    private Biquad[] shelf;
+    private Biquad[] highPass;
+
+    // 当前 100ms 子块的累计平方和（各声道相加）与已累计的采样数
+    private double subBlockSum;
+    private int subBlockSamples;
+    private int subBlockLength;
+    // 最近 4 个子块的均方值，组成一个 400ms 门限块
+    private final double[] recent = new double[SUB_BLOCKS_PER_BLOCK];
+    private int subBlockCount;
+
+    // 所有门限块的均方值
+    private double[] blocks = new double[1024];
+    private int blockCount;
+
+    private double peak;
+
+    public void process(short[] samples, int length, int channels, int sampleRate) {
+        if (channels < 1 || sampleRate <= 0) {
+            return;
+        }
+        if (this.sampleRate != sampleRate || this.channels != channels) {
+            reset(channels, sampleRate);
+        }
+        for (int i = 0; i + channels <= length; i += channels) {
+            for (int c = 0; c < channels; c++) {
+                double x = samples[i + c] / 32768.0;
+                peak = Math.max(peak, Math.abs(x));
+                double y = highPass[c].filter(shelf[c].filter(x));
+                subBlockSum += y * y;
+            }
+            if (++subBlockSamples == subBlockLength) {
+                finishSubBlock();
+            }
+        }
+    }
+
+    // 积分响度（LUFS），没有高于绝对门限的内容（如静音或时长不足 400ms）时返回 null
+    public Double getIntegratedLoudness() {
+        double absoluteSum = 0;
+        int absoluteCount = 0;
+        double absoluteThreshold = toEnergy(ABSOLUTE_GATE_LUFS);
+        for (int i = 0; i < blockCount; i++) {
+            if (blocks[i] > absoluteThreshold) {
+                absoluteSum += blocks[i];
+                absoluteCount++;
+            }
+        }
+        if (absoluteCount == 0) {
+            return null;
+        }
+        double relativeThreshold = toEnergy(toLoudness(absoluteSum / absoluteCount) + RELATIVE_GATE_LU);
+        double gatedSum = 0;
+        int gatedCount = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blocks[i] > absoluteThreshold && blocks[i] > relativeThreshold) {
+                gatedSum += blocks[i];
+                gatedCount++;
+            }
+        }
+        return gatedCount > 0 ? toLoudness(gatedSum / gatedCount) : null;
+    }
+
+    // 采样峰值（线性，0~1）
+    public double getPeak() {
+        return peak;
+    }
+
+    private void finishSubBlock() {
+        recent[subBlockCount % SUB_BLOCKS_PER_BLOCK] = subBlockSum / subBlockLength;
+        subBlockCount++;
+        subBlockSum = 0;
+        subBlockSamples = 0;
+        if (subBlockCount >= SUB_BLOCKS_PER_BLOCK) {
+            double sum = 0;
+            for (double value : recent) {
+                sum += value;
+            }
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            blocks[blockCount++] = sum / SUB_BLOCKS_PER_BLOCK;
+        }
+    }
+
+    // 采样率或声道数变化（极少见）时重新计算滤波器，已累计的门限块保留
+    private void reset(int channels, int sampleRate) {
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.subBlockLength = Math.max(1, sampleRate / 10);
+        this.subBlockSum = 0;
+        this.subBlockSamples = 0;
+        this.subBlockCount = 0;
+        shelf = new Biquad[channels];
+        highPass = new Biquad[channels];
+        for (int c = 0; c < channels; c++) {
+            shelf[c] = Biquad.highShelf(sampleRate);
+            highPass[c] = Biquad.highPass(sampleRate);
+        }
+    }
+
+    private static double toLoudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double toEnergy(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+
+    // 双二阶 IIR 滤波器（直接 II 型转置）
+    private static class Biquad {
+        private final double b0;
+        private final double b1;
+        private final double b2;
+        private final double a1;
+        private final double a2;
+        private double z1;
+        private double z2;
+
+        private Biquad(double b0, double b1, double b2, double a1, double a2) {
+            this.b0 = b0;
+            this.b1 = b1;
+            this.b2 = b2;
+            this.a1 = a1;
+            this.a2 = a2;
+        }
+
+        // K 计权第一级：约 1.68kHz 以上提升 4dB，模拟头部的声学影响
+        private static Biquad highShelf(int sampleRate) {
+            double f0 = 1681.974450955533;
+            double gain = 3.999843853973347;
+            double q = 0.7071752369554196;
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double vh = Math.pow(10, gain / 20);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            double a0 = 1 + k / q + k * k;
+            return new Biquad((vh + vb * k / q + k * k) / a0, 2 * (k * k - vh) / a0, (vh - vb * k / q + k * k) / a0,
+                    2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0);
+        }
+
+        // K 计权第二级：约 38Hz 高通（RLB 曲线）
+        private static Biquad highPass(int sampleRate) {
+            double f0 = 38.13547087602444;
+            double q = 0.5003270373238773;
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double a0 = 1 + k / q + k * k;
+            return new Biquad(1, -2, 1, 2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0);
+        }
+
+        private double filter(double x) {
+            double y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            return y;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.music.util;
+
+import com.music.service.BandwidthLimiter;
+import com.music.service.HotTrackCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// 媒体文件输出工具：支持 Range / If-Range 断点续传与 206 部分响应；热门歌曲从堆外缓存输出，其余文件容器支持时走 sendfile 零拷贝。
+// 下载可按用户/IP 限速（见 BandwidthLimiter），限速输出在拷贝循环中逐块等待令牌。
+// 响应带 ETag / Last-Modified / Cache-Control，If-None-Match / If-Modified-Since 命中时返回 304；
+// 内容寻址的文件以内容哈希作为 ETag，按文件名访问时可长期缓存（immutable）
+@Component
+public class MediaStreamUtil {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern OPEN_ENDED_RANGE = Pattern.compile("^\\s*bytes\\s*=\\s*\\d+\\s*-\\s*$");
+
+    // Tomcat NIO 连接器的 sendfile 约定属性（与 DefaultServlet 相同）
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小的响应直接拷贝，sendfile 的额外开销不划算
+    @Value("${media.sendfile.min-size:49152}")
+    private long sendfileMinSize = 48 * 1024;
+
+    // 按 ID 等可变地址访问的媒体缓存时间，过期后凭 ETag 重新校验
+    @Value("${media.cache.max-age-seconds:3600}")
+    private long maxAgeSeconds = 3600;
+
+    // 视频开放式 Range 单次响应的最大字节数
+    @Value("${media.video.max-range-chunk:4194304}")
+    private long maxVideoRangeChunk = 4 * 1024 * 1024;
+
+    // 内容寻址文件的缓存时间，文件名即内容哈希，内容不会变化
+    private static final Duration IMMUTABLE_MAX_AGE = Duration.ofDays(365);
+
+    @Autowired
+    private HotTrackCache hotTrackCache;
+
+    @Autowired
+    private FileUploadUtil fileUploadUtil;
+
+    // 输出文件（inline 方式），自动处理 Range 请求
+    public void writeFile(HttpServletRequest request, HttpServletResponse response,
+                          File file, String contentType, String downloadName) throws IOException {
+        writeFile(request, response, file, contentType, downloadName, false);
+    }
+
+    // 输出文件，attachment 为 true 时以附件方式下载
+    public void writeFile(HttpServletRequest request, HttpServletResponse response,
+                          File file, String contentType, String downloadName, boolean attachment) throws IOException {
+        writeFile(request, response, file, contentType, downloadName, attachment, getDefaultCacheControl());
+    }
+
+    // 输出文件并指定缓存策略
+    public void writeFile(HttpServletRequest request, HttpServletResponse response, File file, String contentType,
+                          String downloadName, boolean attachment, CacheControl cacheControl) throws IOException {
+        write(request, response, file, contentType, downloadName, attachment, cacheControl, 0, null, null);
+    }
+
+    // 输出文件，确定是从头开始输出内容的 GET 请求（200，或从第 0 字节开始的 206）时先调用 onInitialResponse，用于统计播放；
+    // 304 / 412 / 416、HEAD 以及拖动进度产生的 Range 请求不调用
+    public void writeFile(HttpServletRequest request, HttpServletResponse response, File file, String contentType,
+                          String downloadName, boolean attachment, CacheControl cacheControl,
+                          Runnable onInitialResponse) throws IOException {
+        write(request, response, file, contentType, downloadName, attachment, cacheControl, 0, null, onInitialResponse);
+    }
+
+    // 以附件方式输出下载，按 lease 对应的用户/IP 令牌桶限速；限速时不走 sendfile 和内存缓存，由输出循环逐块控制速率。
+    // onInitialResponse 含义同 writeFile，用于统计下载量
+    public void writeDownload(HttpServletRequest request, HttpServletResponse response, File file, String contentType,
+                              String downloadName, BandwidthLimiter.Lease lease, Runnable onInitialResponse) throws IOException {
+        write(request, response, file, contentType, downloadName, true, getDefaultCacheControl(), 0, lease, onInitialResponse);
+    }
+
+    // 输出视频：开放式 Range（bytes=N-）每次最多返回 media.video.max-range-chunk 字节，
+    // 播放器按 Content-Range 继续请求后续数据，观看者中途离开时不会把整个文件推送出去
+    public void writeVideo(HttpServletRequest request, HttpServletResponse response,
+                           File file, CacheControl cacheControl) throws IOException {
+        write(request, response, file, getContentType(file, "video/mp4"), null, false, cacheControl, maxVideoRangeChunk, null, null);
+    }
+
+    // maxRangeLength 大于 0 时限制开放式 Range 单次响应的长度；lease 不为空时限速输出
+    private void write(HttpServletRequest request, HttpServletResponse response, File file, String contentType,
+                       String downloadName, boolean attachment, CacheControl cacheControl,
+                       long maxRangeLength, BandwidthLimiter.Lease lease, Runnable onInitialResponse) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = buildETag(file);
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        // 校验 If-None-Match / If-Modified-Since（以及 If-Match / If-Unmodified-Since），未变化时设置 304 / 412 并写入 ETag 与 Last-Modified
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setContentType(contentType);
+        if (downloadName != null) {
+            ContentDisposition disposition = (attachment ? ContentDisposition.attachment() : ContentDisposition.inline())
+                    .filename(downloadName, StandardCharsets.UTF_8)
+                    .build();
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeSatisfied(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                // 非法的 Range 头按规范忽略，返回完整内容
+                ranges = List.of();
+            }
+            if (ranges.size() > 1) {
+                // 不支持 multipart/byteranges，多段请求直接拒绝
+                sendRangeNotSatisfiable(response, length);
+                return;
+            }
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    sendRangeNotSatisfiable(response, length);
+                    return;
+                }
+                if (length == 0 || start > end) {
+                    sendRangeNotSatisfiable(response, length);
+                    return;
+                }
+                if (maxRangeLength > 0 && end - start + 1 > maxRangeLength && OPEN_ENDED_RANGE.matcher(rangeHeader).matches()) {
+                    end = start + maxRangeLength - 1;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (onInitialResponse != null && start == 0 && "GET".equalsIgnoreCase(request.getMethod())) {
+            onInitialResponse.run();
+        }
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+        if (lease != null) {
+            copyRange(file, response.getOutputStream(), start, count, lease);
+            return;
+        }
+        ByteBuffer cached = hotTrackCache.get(file);
+        if (cached != null) {
+            copyRange(cached, response.getOutputStream(), start, count);
+            hotTrackCache.recordHitBytes(count);
+            return;
+        }
+        if (useSendfile(request, count)) {
+            // 交给容器在请求结束后用 sendfile 直接从页缓存写入 socket，不经过用户态缓冲区
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return;
+        }
+        copyRange(file, response.getOutputStream(), start, count, null);
+    }
+
+    // 按文件名推断 Content-Type，无法识别时使用默认值
+    public String getContentType(File file, String defaultType) {
+        return MediaTypeFactory.getMediaType(file.getName())
+                .map(MediaType::toString)
+                .orElse(defaultType);
+    }
+
+    // 生成强校验 ETag：内容寻址的文件直接使用内容哈希，其余文件基于大小和修改时间
+    public String buildETag(File file) {
+        String name = file.getName();
+        if (fileUploadUtil.isContentAddressed(name)) {
+            return "\"" + name.substring(0, name.indexOf('.')) + "\"";
+        }
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    // 按文件名访问时的缓存策略：内容寻址的文件名与内容一一对应，可永久缓存
+    public CacheControl getCacheControl(String requestedName) {
+        if (fileUploadUtil.isContentAddressed(requestedName)) {
+            return CacheControl.maxAge(IMMUTABLE_MAX_AGE).cachePublic().immutable();
+        }
+        return getDefaultCacheControl();
+    }
+
+    // 默认缓存策略：短期缓存，过期后凭 ETag / Last-Modified 条件请求重新校验
+    public CacheControl getDefaultCacheControl() {
+        return CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+
+    // If-Range 校验：ETag 必须强匹配，日期必须与 Last-Modified 精确相等（秒级）
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return since != -1 && since / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean useSendfile(HttpServletRequest request, long count) {
+        return count >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR));
+    }
+
+    private void sendRangeNotSatisfiable(HttpServletResponse response, long length) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        response.setContentLength(0);
+    }
+
+    // 从缓存内容指定位置拷贝 count 个字节到输出流（直接内存需经堆内缓冲区写出）
+    private void copyRange(ByteBuffer content, OutputStream out, long position, long count) throws IOException {
+        ByteBuffer range = content.slice((int) position, (int) count);
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, count)];
+        while (range.hasRemaining()) {
+            int length = Math.min(buffer.length, range.remaining());
+            range.get(buffer, 0, length);
+            out.write(buffer, 0, length);
+        }
+        out.flush();
+    }
+
+    // 从文件指定位置拷贝 count 个字节到输出流（不支持 sendfile 或需要限速时的路径）
+    private void copyRange(File file, OutputStream out, long position, long count,
+                           BandwidthLimiter.Lease lease) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long remaining = count;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < BUFFER_SIZE) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                if (lease != null) {
+                    // 限速时逐块刷出，避免数据积压在容器缓冲区里失去整形效果
+                    lease.throttle(read);
+                    out.write(buffer.array(), 0, read);
+                    out.flush();
+                } else {
+                    out.write(buffer.array(), 0, read);
+                }
+                position += read;
+                remaining -= read;
+            }
+            out.flush();
+        }
+    }
+}
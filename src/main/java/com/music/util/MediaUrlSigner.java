@@ -0,0 +1,99 @@
+package com.music.util;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+// 媒体地址签名（HMAC-SHA256），媒体请求校验签名即可定位文件并记录播放，不查数据库
+@Component
+public class MediaUrlSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    // 签名密钥，未配置时由 jwt.secret 派生（HMAC(jwt.secret, "media-url")），不直接复用 JWT 的签名密钥
+    @Value("${media.signed-url.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${media.signed-url.ttl-seconds:7200}")
+    private long ttlSeconds;
+
+    @Value("${media.signed-url.bucket-seconds:600}")
+    private long bucketSeconds;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = secret != null && !secret.isEmpty()
+                ? secret.getBytes(StandardCharsets.UTF_8)
+                : hmac(jwtSecret.getBytes(StandardCharsets.UTF_8), "media-url");
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    // 本次签发地址的过期时间（秒级时间戳）
+    public long nextExpiry() {
+        long bucket = Math.max(1, bucketSeconds);
+        long expiry = System.currentTimeMillis() / 1000 + ttlSeconds;
+        return (expiry + bucket - 1) / bucket * bucket;
+    }
+
+    // 生成签名地址，musicId、userId 与 duration 可为空（封面等不需要计播放量的资源）
+    public String sign(String type, String fileName, Long musicId, Long userId, Integer duration, long expiry) {
+        StringBuilder url = new StringBuilder(contextPath).append("/media/").append(type).append('/')
+                .append(URLEncoder.encode(fileName, StandardCharsets.UTF_8)).append('?');
+        if (musicId != null) {
+            url.append("m=").append(musicId).append('&');
+        }
+        if (userId != null) {
+            url.append("u=").append(userId).append('&');
+        }
+        if (duration != null) {
+            url.append("d=").append(duration).append('&');
+        }
+        return url.append("e=").append(expiry)
+                .append("&s=").append(signature(type, fileName, musicId, userId, duration, expiry))
+                .toString();
+    }
+
+    // 校验签名与有效期
+    public boolean verify(String type, String fileName, Long musicId, Long userId, Integer duration, long expiry, String signature) {
+        if (signature == null || expiry < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        byte[] expected = signature(type, fileName, musicId, userId, duration, expiry).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String signature(String type, String fileName, Long musicId, Long userId, Integer duration, long expiry) {
+        String payload = type + '\n' + fileName + '\n' + (musicId != null ? musicId : "") + '\n'
+                + (userId != null ? userId : "") + '\n' + (duration != null ? duration : "") + '\n' + expiry;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hmac(key, payload));
+    }
+
+    private byte[] hmac(byte[] keyBytes, String data) {
+        return hmac(new SecretKeySpec(keyBytes, ALGORITHM), data);
+    }
+
+    private byte[] hmac(SecretKeySpec keySpec, String data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(keySpec);
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.music.util;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.DecoderException;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+// MP3 流式解码（JLayer），逐帧回调 16 位 PCM，不把整首歌解码进内存
+public final class Mp3Decoder {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface FrameHandler {
+        // samples 中前 length 个为本帧采样（按声道交错），回调返回后缓冲区会被复用
+        void onFrame(short[] samples, int length, int channels, int sampleRate);
+    }
+
+    private Mp3Decoder() {
+    }
+
+    // 解码整个文件，返回解码的帧数
+    public static int decode(File file, FrameHandler handler) throws IOException {
+        int frames = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE)) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            short[] silence = new short[0];
+            try {
+                Header header;
+                while ((header = bitstream.readFrame()) != null) {
+                    try {
+                        SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                        handler.onFrame(output.getBuffer(), output.getBufferLength(),
+                                output.getChannelCount(), output.getSampleFrequency());
+                    } catch (DecoderException e) {
+                        int channels = header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+                        int length = Math.round(header.ms_per_frame() * header.frequency() / 1000) * channels;
+                        if (silence.length < length) {
+                            silence = new short[length];
+                        }
+                        handler.onFrame(silence, length, channels, header.frequency());
+                    }
+                    bitstream.closeFrame();
+                    frames++;
+                }
+            } catch (BitstreamException e) {
+                // 文件尾部截断等，使用已解码的部分
+            } finally {
+                try {
+                    bitstream.close();
+                } catch (BitstreamException ignored) {
+                    // 输入流由 try-with-resources 关闭
+                }
+            }
+        }
+        return frames;
+    }
+}
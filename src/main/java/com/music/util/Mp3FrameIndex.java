@@ -0,0 +1,138 @@
+package com.music.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// MP3 帧偏移索引，保存在音频文件旁的 .idx 文件中，按时间定位帧
+public class Mp3FrameIndex {
+    private static final int MAGIC = 0x4D503349; // "MP3I"
+    private static final int VERSION = 1;
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private final int sampleRate;
+    private final int samplesPerFrame;
+    private final long[] offsets; // offsets[i] 为第 i 帧起始偏移，offsets[frameCount] 为最后一帧的结束位置
+
+    public Mp3FrameIndex(int sampleRate, int samplesPerFrame, long firstFrameOffset, int[] frameSizes, int frameCount) {
+        this.sampleRate = sampleRate;
+        this.samplesPerFrame = samplesPerFrame;
+        this.offsets = new long[frameCount + 1];
+        offsets[0] = firstFrameOffset;
+        for (int i = 0; i < frameCount; i++) {
+            offsets[i + 1] = offsets[i] + frameSizes[i];
+        }
+    }
+
+    // 音频文件对应的索引文件
+    public static File indexFileFor(File audioFile) {
+        return new File(audioFile.getPath() + INDEX_SUFFIX);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    public int getFrameCount() {
+        return offsets.length - 1;
+    }
+
+    public long getFirstFrameOffset() {
+        return offsets[0];
+    }
+
+    // 最后一帧的结束位置（之后为 ID3v1/APE 标签或文件尾）
+    public long getAudioEndOffset() {
+        return offsets[offsets.length - 1];
+    }
+
+    // 第 frame 帧的起始偏移，frame 等于帧数时返回音频结束位置
+    public long getFrameOffset(int frame) {
+        return offsets[frame];
+    }
+
+    public int getFrameSize(int frame) {
+        return (int) (offsets[frame + 1] - offsets[frame]);
+    }
+
+    // 每帧时长（毫秒）
+    public double getFrameDurationMillis() {
+        return samplesPerFrame * 1000.0 / sampleRate;
+    }
+
+    public long getDurationMillis() {
+        return Math.round(getFrameCount() * getFrameDurationMillis());
+    }
+
+    // 包含指定时间点（毫秒）的帧序号，超出范围时取首帧或末尾
+    public int frameAt(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        long frame = (long) (millis / getFrameDurationMillis());
+        return (int) Math.min(frame, getFrameCount());
+    }
+
+    // 指定时间点（毫秒）对应的字节偏移，落在帧边界上
+    public long offsetAt(long millis) {
+        return getFrameOffset(frameAt(millis));
+    }
+
+    // 写入索引文件（先写临时文件再改名）
+    public void write(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), ".idx-", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sampleRate);
+                out.writeInt(samplesPerFrame);
+                out.writeInt(getFrameCount());
+                out.writeLong(getFirstFrameOffset());
+                for (int i = 0; i < getFrameCount(); i++) {
+                    out.writeShort(getFrameSize(i));
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 读取索引文件，格式不符时抛出 IOException
+    public static Mp3FrameIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an MP3 frame index: " + file);
+            }
+            int sampleRate = in.readInt();
+            int samplesPerFrame = in.readInt();
+            int frameCount = in.readInt();
+            long firstFrameOffset = in.readLong();
+            if (sampleRate <= 0 || samplesPerFrame <= 0 || frameCount < 0) {
+                throw new IOException("Corrupted MP3 frame index: " + file);
+            }
+            int[] frameSizes = new int[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                frameSizes[i] = in.readUnsignedShort();
+            }
+            return new Mp3FrameIndex(sampleRate, samplesPerFrame, firstFrameOffset, frameSizes, frameCount);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.music.util;
+
+// MP3 文件解析结果：标签信息 + 音频流参数
+public class Mp3Metadata {
+    private String title;
+    private String artist;
+    private String album;
+    private String genre;
+    private long durationMillis;
+    private int sampleRate;
+    private int channels;
+    private int bitrate; // 平均码率(bps)
+    private boolean vbr;
+    private int frameCount;
+    private long audioStart;
+    private long audioEnd;
+    private Mp3FrameIndex frameIndex;
+
+    // 时长（秒，四舍五入），用于填充 music.duration
+    public int getDurationSeconds() {
+        return (int) Math.round(durationMillis / 1000.0);
+    }
+
+    // 手动实现getter/setter方法
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public void setArtist(String artist) {
+        this.artist = artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public void setAlbum(String album) {
+        this.album = album;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public void setChannels(int channels) {
+        this.channels = channels;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(int bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public boolean isVbr() {
+        return vbr;
+    }
+
+    public void setVbr(boolean vbr) {
+        this.vbr = vbr;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public void setFrameCount(int frameCount) {
+        this.frameCount = frameCount;
+    }
+
+    public long getAudioStart() {
+        return audioStart;
+    }
+
+    public void setAudioStart(long audioStart) {
+        this.audioStart = audioStart;
+    }
+
+    public long getAudioEnd() {
+        return audioEnd;
+    }
+
+    public void setAudioEnd(long audioEnd) {
+        this.audioEnd = audioEnd;
+    }
+
+    public Mp3FrameIndex getFrameIndex() {
+        return frameIndex;
+    }
+
+    public void setFrameIndex(Mp3FrameIndex frameIndex) {
+        this.frameIndex = frameIndex;
+    }
+}
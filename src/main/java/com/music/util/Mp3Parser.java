@@ -0,0 +1,455 @@
+package com.music.util;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// MP3 解析：读取 ID3 标签与 Xing/VBRI 头，扫描全部音频帧建立帧偏移索引
+@Component
+public class Mp3Parser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_TEXT_FRAME_SIZE = 4096;
+
+    // 码率表(kbps)：[MPEG1 / MPEG2&2.5][Layer I/II/III][索引]
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+            }
+    };
+
+    // 采样率表：按版本位索引（0: MPEG2.5, 2: MPEG2, 3: MPEG1）
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},
+            null,
+            {22050, 24000, 16000},
+            {44100, 48000, 32000}
+    };
+
+    // 解析 MP3 文件，文件中找不到有效音频帧时帧数为 0、帧索引为空
+    public Mp3Metadata parse(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            Mp3Metadata metadata = new Mp3Metadata();
+
+            long audioStart = readId3v2(reader, metadata);
+            long audioEnd = readTrailingTags(reader, metadata);
+            metadata.setAudioStart(audioStart);
+            metadata.setAudioEnd(audioEnd);
+
+            long position = findFrame(reader, audioStart, audioEnd, null);
+            if (position < 0) {
+                return metadata;
+            }
+            FrameHeader first = FrameHeader.parse(reader.getInt(position));
+            metadata.setSampleRate(first.sampleRate());
+            metadata.setChannels(first.channelMode() == 3 ? 1 : 2);
+
+            // Xing/Info/VBRI 头所在的帧不含音频数据，不计入帧索引
+            int taggedFrames = readVbrHeader(reader, position, first);
+            if (taggedFrames >= 0) {
+                position += first.frameLength();
+            }
+
+            scanFrames(reader, position, audioEnd, first, metadata);
+            if (metadata.getFrameCount() == 0 && taggedFrames > 0) {
+                // 没有扫描到完整音频帧时退回到 VBR 头中记录的帧数
+                metadata.setDurationMillis(Math.round(taggedFrames * (double) first.samplesPerFrame() * 1000 / first.sampleRate()));
+            }
+            return metadata;
+        }
+    }
+
+    // 顺序扫描音频帧，建立帧索引并计算时长与平均码率
+    private void scanFrames(Reader reader, long position, long audioEnd, FrameHeader reference, Mp3Metadata metadata) throws IOException {
+        int[] sizes = new int[8192];
+        int count = 0;
+        long firstFrame = position;
+        int lastBitrate = -1;
+        boolean bitrateChanged = false;
+
+        while (position + 4 <= audioEnd) {
+            FrameHeader header = FrameHeader.parse(reader.getInt(position));
+            if (header != null && header.isCompatible(reference) && position + header.frameLength() <= audioEnd) {
+                if (count == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                }
+                sizes[count++] = header.frameLength();
+                if (lastBitrate != -1 && header.bitrate() != lastBitrate) {
+                    bitrateChanged = true;
+                }
+                lastBitrate = header.bitrate();
+                position += header.frameLength();
+                continue;
+            }
+            // 同步丢失：向后寻找下一个有效帧，中间的字节并入前一帧（或作为首帧前的填充跳过）
+            long next = findFrame(reader, position + 1, audioEnd, reference);
+            if (next < 0) {
+                break;
+            }
+            if (count == 0) {
+                firstFrame = next;
+            } else if (sizes[count - 1] + (next - position) <= 0xFFFF) {
+                sizes[count - 1] += (int) (next - position);
+            } else {
+                break;
+            }
+            position = next;
+        }
+
+        Mp3FrameIndex index = new Mp3FrameIndex(reference.sampleRate(), reference.samplesPerFrame(), firstFrame, sizes, count);
+        metadata.setFrameIndex(index);
+        metadata.setFrameCount(count);
+        metadata.setDurationMillis(index.getDurationMillis());
+        if (count > 0) {
+            metadata.setAudioStart(firstFrame);
+            metadata.setVbr(bitrateChanged);
+            long audioBytes = index.getAudioEndOffset() - firstFrame;
+            metadata.setBitrate((int) Math.round(audioBytes * 8 * 1000.0 / Math.max(1, index.getDurationMillis())));
+        }
+    }
+
+    // 查找有效帧：帧头合法，且紧随其后的位置也是兼容的帧头（或正好到达音频结尾），避免把音频数据误认为同步字
+    private long findFrame(Reader reader, long from, long audioEnd, FrameHeader reference) throws IOException {
+        for (long position = from; position + 4 <= audioEnd; position++) {
+            if (reader.get(position) != (byte) 0xFF) {
+                continue;
+            }
+            FrameHeader header = FrameHeader.parse(reader.getInt(position));
+            if (header == null || (reference != null && !header.isCompatible(reference))) {
+                continue;
+            }
+            long next = position + header.frameLength();
+            if (next > audioEnd) {
+                continue;
+            }
+            if (next + 4 > audioEnd) {
+                return position;
+            }
+            FrameHeader following = FrameHeader.parse(reader.getInt(next));
+            if (following != null && following.isCompatible(header)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    // 读取 Xing/Info/VBRI 头，返回其中记录的帧数（未记录时为 0），没有 VBR 头时返回 -1
+    private int readVbrHeader(Reader reader, long position, FrameHeader header) throws IOException {
+        long xingOffset = position + 4 + header.sideInfoLength();
+        if (xingOffset + 12 <= reader.size()) {
+            int tag = reader.getInt(xingOffset);
+            if (tag == 0x58696E67 || tag == 0x496E666F) { // "Xing" / "Info"
+                int flags = reader.getInt(xingOffset + 4);
+                return (flags & 0x1) != 0 ? reader.getInt(xingOffset + 8) : 0;
+            }
+        }
+        long vbriOffset = position + 4 + 32;
+        if (vbriOffset + 18 <= reader.size() && reader.getInt(vbriOffset) == 0x56425249) { // "VBRI"
+            return reader.getInt(vbriOffset + 14);
+        }
+        return -1;
+    }
+
+    // 解析文件开头的 ID3v2 标签（可能有多个连续标签），返回标签之后的位置
+    private long readId3v2(Reader reader, Mp3Metadata metadata) throws IOException {
+        long position = 0;
+        while (position + 10 <= reader.size()
+                && reader.get(position) == 'I' && reader.get(position + 1) == 'D' && reader.get(position + 2) == '3') {
+            int majorVersion = reader.get(position + 3);
+            int flags = reader.get(position + 5) & 0xFF;
+            int size = syncsafe(reader.getInt(position + 6));
+            long tagEnd = position + 10 + size + ((flags & 0x10) != 0 ? 10 : 0);
+            // 不处理整体反同步的标签内容，只跳过标签本身
+            if ((flags & 0x80) == 0) {
+                readId3v2Frames(reader, position + 10, Math.min(position + 10 + size, reader.size()),
+                        majorVersion, flags, metadata);
+            }
+            position = tagEnd;
+        }
+        return Math.min(position, reader.size());
+    }
+
+    private void readId3v2Frames(Reader reader, long position, long end, int majorVersion, int flags,
+                                 Mp3Metadata metadata) throws IOException {
+        if ((flags & 0x40) != 0 && majorVersion >= 3) {
+            // 扩展头：2.3 的长度不含自身 4 字节，2.4 的长度为 syncsafe 且包含自身
+            int extendedSize = reader.getInt(position);
+            position += majorVersion == 3 ? extendedSize + 4 : syncsafe(extendedSize);
+        }
+        int idLength = majorVersion == 2 ? 3 : 4;
+        int headerLength = majorVersion == 2 ? 6 : 10;
+        while (position + headerLength <= end) {
+            if (reader.get(position) == 0) {
+                break; // 填充区
+            }
+            byte[] idBytes = reader.getBytes(position, idLength);
+            String id = new String(idBytes, StandardCharsets.ISO_8859_1);
+            int frameSize;
+            boolean encoded = false;
+            if (majorVersion == 2) {
+                frameSize = ((reader.get(position + 3) & 0xFF) << 16) | ((reader.get(position + 4) & 0xFF) << 8)
+                        | (reader.get(position + 5) & 0xFF);
+            } else {
+                int raw = reader.getInt(position + 4);
+                frameSize = majorVersion == 4 ? syncsafe(raw) : raw;
+                int formatFlags = reader.get(position + 9) & 0xFF;
+                // 压缩、加密、分组（数据前多一个分组字节）、非同步化等格式的帧不解析
+                // 2.4：分组 0x40、压缩 0x08、加密 0x04、非同步化 0x02、数据长度 0x01；2.3：压缩 0x80、加密 0x40、分组 0x20
+                encoded = majorVersion == 4 ? (formatFlags & 0x4F) != 0 : (formatFlags & 0xE0) != 0;
+            }
+            if (frameSize <= 0 || position + headerLength + frameSize > end) {
+                break;
+            }
+            if (!encoded && frameSize <= MAX_TEXT_FRAME_SIZE) {
+                String field = textFieldFor(id);
+                if (field != null) {
+                    String value = decodeTextFrame(reader.getBytes(position + headerLength, frameSize));
+                    applyField(metadata, field, value);
+                }
+            }
+            position += headerLength + frameSize;
+        }
+    }
+
+    private String textFieldFor(String id) {
+        return switch (id) {
+            case "TIT2", "TT2" -> "title";
+            case "TPE1", "TP1" -> "artist";
+            case "TALB", "TAL" -> "album";
+            case "TCON", "TCO" -> "genre";
+            default -> null;
+        };
+    }
+
+    private void applyField(Mp3Metadata metadata, String field, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        switch (field) {
+            case "title" -> metadata.setTitle(value);
+            case "artist" -> metadata.setArtist(value);
+            case "album" -> metadata.setAlbum(value);
+            case "genre" -> {
+                // 只保留文字风格，去掉 "(17)" 这类 ID3v1 风格编号
+                String genre = value.replaceAll("^\\(\\d+\\)", "").trim();
+                if (!genre.isEmpty() && !genre.matches("\\d+")) {
+                    metadata.setGenre(genre);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    // 文本帧：首字节为编码（0: ISO-8859-1, 1: 带 BOM 的 UTF-16, 2: UTF-16BE, 3: UTF-8），多值以 0 分隔时取第一个
+    private String decodeTextFrame(byte[] data) {
+        if (data.length < 2) {
+            return null;
+        }
+        byte[] content = Arrays.copyOfRange(data, 1, data.length);
+        String text = switch (data[0]) {
+            case 1 -> new String(content, StandardCharsets.UTF_16);
+            case 2 -> new String(content, StandardCharsets.UTF_16BE);
+            case 3 -> new String(content, StandardCharsets.UTF_8);
+            default -> decodeLegacy(content);
+        };
+        int nul = text.indexOf('\0');
+        return (nul >= 0 ? text.substring(0, nul) : text).trim();
+    }
+
+    // 标称 ISO-8859-1 的文本常见实际为 UTF-8 或 GBK 编码的中文，依次尝试严格解码
+    private String decodeLegacy(byte[] content) {
+        boolean ascii = true;
+        for (byte b : content) {
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            return new String(content, StandardCharsets.ISO_8859_1);
+        }
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, Charset.forName("GBK")}) {
+            try {
+                CharBuffer decoded = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(trimNul(content)));
+                return decoded.toString();
+            } catch (CharacterCodingException e) {
+                // 尝试下一种编码
+            }
+        }
+        return new String(content, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] trimNul(byte[] content) {
+        int length = content.length;
+        while (length > 0 && content[length - 1] == 0) {
+            length--;
+        }
+        return length == content.length ? content : Arrays.copyOf(content, length);
+    }
+
+    // 解析文件末尾的 ID3v1 与 APEv2 标签，返回音频数据的结束位置
+    private long readTrailingTags(Reader reader, Mp3Metadata metadata) throws IOException {
+        long end = reader.size();
+        if (end >= 128 && reader.get(end - 128) == 'T' && reader.get(end - 127) == 'A' && reader.get(end - 126) == 'G') {
+            byte[] tag = reader.getBytes(end - 128, 128);
+            // ID3v2 中已有的字段优先
+            if (metadata.getTitle() == null) {
+                metadata.setTitle(decodeId3v1Field(tag, 3));
+            }
+            if (metadata.getArtist() == null) {
+                metadata.setArtist(decodeId3v1Field(tag, 33));
+            }
+            if (metadata.getAlbum() == null) {
+                metadata.setAlbum(decodeId3v1Field(tag, 63));
+            }
+            end -= 128;
+        }
+        if (end >= 32 && new String(reader.getBytes(end - 32, 8), StandardCharsets.ISO_8859_1).equals("APETAGEX")) {
+            ByteBuffer footer = ByteBuffer.wrap(reader.getBytes(end - 32, 32)).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            long tagSize = footer.getInt(12) & 0xFFFFFFFFL;
+            boolean hasHeader = (footer.getInt(20) & 0x80000000) != 0;
+            long apeStart = end - tagSize - (hasHeader ? 32 : 0);
+            if (apeStart >= 0) {
+                end = apeStart;
+            }
+        }
+        return end;
+    }
+
+    private String decodeId3v1Field(byte[] tag, int offset) {
+        String value = decodeLegacy(trimNul(Arrays.copyOfRange(tag, offset, offset + 30))).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int syncsafe(int value) {
+        return ((value >> 24) & 0x7F) << 21 | ((value >> 16) & 0x7F) << 14 | ((value >> 8) & 0x7F) << 7 | (value & 0x7F);
+    }
+
+    // MPEG 音频帧头
+    record FrameHeader(int versionBits, int layer, int bitrate, int sampleRate, int channelMode,
+                       int frameLength, int samplesPerFrame) {
+
+        static FrameHeader parse(int header) {
+            if ((header & 0xFFE00000) != 0xFFE00000) {
+                return null;
+            }
+            int versionBits = (header >> 19) & 0x3;
+            int layerBits = (header >> 17) & 0x3;
+            int bitrateIndex = (header >> 12) & 0xF;
+            int sampleRateIndex = (header >> 10) & 0x3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15
+                    || sampleRateIndex == 3 || (header & 0x3) == 2) {
+                return null;
+            }
+            boolean mpeg1 = versionBits == 3;
+            int layer = 4 - layerBits;
+            int padding = (header >> 9) & 0x1;
+            int channelMode = (header >> 6) & 0x3;
+            int bitrate = BITRATES[mpeg1 ? 0 : 1][layer - 1][bitrateIndex] * 1000;
+            int sampleRate = SAMPLE_RATES[versionBits][sampleRateIndex];
+
+            int frameLength;
+            int samplesPerFrame;
+            if (layer == 1) {
+                frameLength = (12 * bitrate / sampleRate + padding) * 4;
+                samplesPerFrame = 384;
+            } else if (layer == 2 || mpeg1) {
+                frameLength = 144 * bitrate / sampleRate + padding;
+                samplesPerFrame = 1152;
+            } else {
+                frameLength = 72 * bitrate / sampleRate + padding;
+                samplesPerFrame = 576;
+            }
+            return new FrameHeader(versionBits, layer, bitrate, sampleRate, channelMode, frameLength, samplesPerFrame);
+        }
+
+        // 同一码流中版本、层和采样率不应变化（VBR 只改变码率）
+        boolean isCompatible(FrameHeader other) {
+            return versionBits == other.versionBits && layer == other.layer && sampleRate == other.sampleRate;
+        }
+
+        // Layer III 边信息长度，Xing 头位于边信息之后
+        int sideInfoLength() {
+            boolean mono = channelMode == 3;
+            if (versionBits == 3) {
+                return mono ? 17 : 32;
+            }
+            return mono ? 9 : 17;
+        }
+    }
+
+    // 基于 FileChannel 的随机读取，维护一个 64KB 窗口，顺序扫描时每个窗口只读一次磁盘
+    private static class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long windowStart = -1;
+        private int windowLength;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long position) throws IOException {
+            if (position < windowStart || position >= windowStart + windowLength) {
+                fill(position);
+            }
+            return buffer.get((int) (position - windowStart));
+        }
+
+        int getInt(long position) throws IOException {
+            return ((get(position) & 0xFF) << 24) | ((get(position + 1) & 0xFF) << 16)
+                    | ((get(position + 2) & 0xFF) << 8) | (get(position + 3) & 0xFF);
+        }
+
+        byte[] getBytes(long position, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = get(position + i);
+            }
+            return bytes;
+        }
+
+        private void fill(long position) throws IOException {
+            if (position < 0 || position >= size) {
+                throw new IOException("Read beyond end of file: " + position);
+            }
+            buffer.clear();
+            windowStart = position;
+            windowLength = 0;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + windowLength);
+                if (read < 0) {
+                    break;
+                }
+                windowLength += read;
+            }
+        }
+    }
+}
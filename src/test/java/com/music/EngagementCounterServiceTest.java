@@ -0,0 +1,161 @@
+package com.music;
+
+import com.music.service.EngagementCounterService;
+import com.music.service.EngagementCounterService.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+
+// 互动计数在高并发与部分写库失败下保持精确，且行更新次数远少于点赞次数
+public class EngagementCounterServiceTest {
+    private static final int THREADS = 16;
+    private static final int LIKES_PER_THREAD = 50_000;
+    private static final long HOT_POST_ID = 1L;
+
+    private EngagementCounterService service;
+    // 模拟的数据库：对象ID -> 已落库的值
+    private final Map<Long, Long> database = new ConcurrentHashMap<>();
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager("music");
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        Mockito.when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            // 每 5 次写库失败一次，验证失败的增量会放回重试
+            if (batchCalls.incrementAndGet() % 5 == 0) {
+                throw new IllegalStateException("simulated failure");
+            }
+            List<Object[]> batch = invocation.getArgument(1);
+            for (Object[] args : batch) {
+                database.merge((Long) args[1], (Long) args[0], Long::sum);
+            }
+            return new int[batch.size()];
+        });
+        service = TestServices.engagementCounterService(jdbcTemplate, cacheManager);
+    }
+
+    @Test
+    public void concurrentIncrementsAreExactAndCoalesced() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                service.flush();
+            }
+        });
+        flusher.start();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long otherId = 100 + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                    service.increment(Counter.POST_LIKE, HOT_POST_ID);
+                    // 每 10 次点赞有一次取消
+                    if (i % 10 == 9) {
+                        service.increment(Counter.POST_LIKE, HOT_POST_ID, -1);
+                    }
+                    service.increment(Counter.POST_LIKE, otherId);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+        done.set(true);
+        flusher.join();
+        pool.shutdown();
+
+        // 落库前读取：已落库的值 + 尚未落库的增量
+        long expectedHot = (long) THREADS * (LIKES_PER_THREAD - LIKES_PER_THREAD / 10);
+        long persisted = database.getOrDefault(HOT_POST_ID, 0L);
+        assertEquals(expectedHot, persisted + service.getPending(Counter.POST_LIKE, HOT_POST_ID));
+
+        // 写库失败时增量放回，可能需要多次落库
+        for (int i = 0; i < 10 && !allFlushed(); i++) {
+            service.flush();
+        }
+        assertEquals(expectedHot, database.get(HOT_POST_ID));
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(LIKES_PER_THREAD, database.get(100L + t));
+        }
+
+        Map<String, Object> stats = service.getStats();
+        long accepted = (Long) stats.get("accepted");
+        long rowUpdates = (Long) stats.get("rowUpdates");
+        assertEquals((long) THREADS * (LIKES_PER_THREAD * 2 + LIKES_PER_THREAD / 10), accepted);
+        assertTrue(rowUpdates * 10 < accepted, "increments should be coalesced into far fewer row updates: "
+                + accepted + " increments, " + rowUpdates + " row updates in " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void incrementsInsideTransactionApplyOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.increment(Counter.MUSIC_LIKE, 7L);
+            assertEquals(0, service.getPending(Counter.MUSIC_LIKE, 7L));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(1, service.getPending(Counter.MUSIC_LIKE, 7L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // 回滚：不调用 afterCommit，计数不变
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.increment(Counter.MUSIC_LIKE, 7L);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, service.getPending(Counter.MUSIC_LIKE, 7L));
+        assertEquals(6, service.getCurrent(Counter.MUSIC_LIKE, 7L, 5));
+    }
+
+    @Test
+    public void flushEvictsCachedMusicSoCountsDoNotFallBack() {
+        cacheManager.getCache("music").put(9L, "cached before flush");
+        service.increment(Counter.MUSIC_PLAY, 9L);
+        service.flush();
+
+        // 缓存中的旧值已清除，下次读取拿到落库后的值，不会少计刚落库的增量
+        assertEquals(1L, database.get(9L));
+        assertEquals(0, service.getPending(Counter.MUSIC_PLAY, 9L));
+        assertNull(cacheManager.getCache("music").get(9L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean allFlushed() {
+        Map<String, Object> counters = (Map<String, Object>) service.getStats().get("counters");
+        return ((Map<String, Object>) counters.get(Counter.POST_LIKE.name())).get("pendingKeys").equals(0);
+    }
+}
@@ -0,0 +1,183 @@
+package com.music;
+
+import com.music.entity.User;
+import com.music.repository.MusicLikeRepository;
+import com.music.repository.PostLikeRepository;
+import com.music.repository.PostRepository;
+import com.music.service.EngagementCounterService;
+import com.music.service.LikeService;
+import com.music.service.LikedSetCache;
+import com.music.service.LikedSetCache.Target;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+// 点赞状态缓存：每个用户只加载一次，点赞后立即生效，内存超出上限时按最久未访问淘汰
+public class LikeStatusCacheTest {
+    private static final int USERS = 200;
+    private static final int POSTS = 100;
+    private static final int REQUESTS = 50_000;
+    private static final double TOGGLE_RATIO = 0.01;
+
+    private LikeService likeService;
+    private LikedSetCache likedSetCache;
+    private PostLikeRepository postLikeRepository;
+    private MusicLikeRepository musicLikeRepository;
+
+    // 模拟的 post_likes 表：userId -> 点过赞的动态ID
+    private final Map<Long, Set<Long>> likes = new ConcurrentHashMap<>();
+    private final AtomicLong loadQueries = new AtomicLong();
+
+    @BeforeEach
+    public void setUp() {
+        postLikeRepository = Mockito.mock(PostLikeRepository.class);
+        musicLikeRepository = Mockito.mock(MusicLikeRepository.class);
+        PostRepository postRepository = Mockito.mock(PostRepository.class);
+        Mockito.when(postRepository.existsById(anyLong())).thenReturn(true);
+        Mockito.when(postLikeRepository.findPostIdsByUserId(anyLong())).thenAnswer(invocation -> {
+            loadQueries.incrementAndGet();
+            return new ArrayList<>(liked(invocation.getArgument(0)));
+        });
+        Mockito.when(postLikeRepository.existsByUserIdAndPostId(anyLong(), anyLong()))
+                .thenAnswer(invocation -> liked(invocation.getArgument(0)).contains((Long) invocation.getArgument(1)));
+        Mockito.when(postLikeRepository.insertLike(anyLong(), anyLong()))
+                .thenAnswer(invocation -> liked(invocation.getArgument(0)).add(invocation.getArgument(1)) ? 1 : 0);
+        Mockito.when(postLikeRepository.deleteLike(anyLong(), anyLong()))
+                .thenAnswer(invocation -> liked(invocation.getArgument(0)).remove((Long) invocation.getArgument(1)) ? 1 : 0);
+
+        likedSetCache = TestServices.likedSetCache(postLikeRepository, musicLikeRepository);
+
+        likeService = new LikeService();
+        ReflectionTestUtils.setField(likeService, "postLikeRepository", postLikeRepository);
+        ReflectionTestUtils.setField(likeService, "postRepository", postRepository);
+        ReflectionTestUtils.setField(likeService, "engagementCounterService", Mockito.mock(EngagementCounterService.class));
+        ReflectionTestUtils.setField(likeService, "likedSetCache", likedSetCache);
+    }
+
+    @Test
+    public void togglesKeepCacheWarmAndStatusCorrect() {
+        Random random = new Random(42);
+        long reads = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            long userId = 1 + random.nextInt(USERS);
+            long postId = 1 + (long) (POSTS * Math.pow(random.nextDouble(), 3));
+            if (random.nextDouble() < TOGGLE_RATIO) {
+                User user = new User();
+                user.setId(userId);
+                likeService.togglePostLike(user, postId);
+                continue;
+            }
+            reads++;
+            if (i % 10 == 0) {
+                // 动态列表：整页一次查询
+                List<Long> page = new ArrayList<>();
+                for (long id = postId; id < postId + 20; id++) {
+                    page.add(id);
+                }
+                Set<Long> expected = page.stream().filter(liked(userId)::contains).collect(Collectors.toSet());
+                assertEquals(expected, likeService.getLikedPostIds(userId, page));
+            } else {
+                assertEquals(liked(userId).contains(postId), likeService.isPostLikedByUser(userId, postId));
+            }
+        }
+
+        Map<String, Object> stats = likedSetCache.getStats();
+        // 每个用户只加载一次，点赞不会使缓存失效
+        assertTrue(loadQueries.get() <= USERS, "loads=" + loadQueries.get() + " for " + USERS + " users");
+        assertTrue((Double) stats.get("hitRate") > 0.99, "hitRate=" + stats.get("hitRate") + " over " + reads + " reads");
+    }
+
+    @Test
+    public void updateDuringLoadIsNotOverwrittenByStaleResult() throws Exception {
+        long userId = 7L;
+        liked(userId).add(1L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(postLikeRepository.findPostIdsByUserId(userId)).thenAnswer(invocation -> {
+            // 先读出旧数据，再等待点赞完成
+            List<Long> snapshot = new ArrayList<>(liked(userId));
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return snapshot;
+        }).thenAnswer(invocation -> new ArrayList<>(liked(userId)));
+
+        CompletableFuture<Boolean> staleRead = CompletableFuture.supplyAsync(() -> likedSetCache.isLiked(Target.POST, userId, 2L));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        liked(userId).add(2L);
+        likedSetCache.update(Target.POST, userId, 2L, true);
+        release.countDown();
+
+        // 加载开始前读取的旧数据只用于这次查询，不放入缓存
+        assertFalse(staleRead.get(5, TimeUnit.SECONDS));
+        assertTrue(likedSetCache.isLiked(Target.POST, userId, 2L));
+        assertTrue(likedSetCache.isLiked(Target.POST, userId, 1L));
+        assertEquals(1L, likedSetCache.getStats().get("discardedLoads"));
+    }
+
+    @Test
+    public void measuresMemoryPerUserAndEvictsLeastRecentlyUsed() {
+        // 曲库 200 万首，收藏数呈长尾分布：大多数用户几十首，少数用户上万首
+        int users = 2_000;
+        int catalogSize = 2_000_000;
+        Random random = new Random(7);
+        Map<Long, List<Long>> favorites = new ConcurrentHashMap<>();
+        long totalLikes = 0;
+        for (long userId = 1; userId <= users; userId++) {
+            int count = (int) Math.min(20_000, 10 / Math.pow(1 - random.nextDouble(), 1.2));
+            List<Long> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(1L + random.nextInt(catalogSize));
+            }
+            favorites.put(userId, ids);
+            totalLikes += count;
+        }
+        Mockito.when(musicLikeRepository.findMusicIdsByUserId(anyLong()))
+                .thenAnswer(invocation -> favorites.get((Long) invocation.getArgument(0)));
+
+        for (long userId = 1; userId <= users; userId++) {
+            likedSetCache.isLiked(Target.MUSIC, userId, 1L);
+        }
+        Map<String, Object> stats = likedSetCache.getStats();
+        long bytes = (Long) stats.get("bytes");
+        double bytesPerLikedId = (Double) stats.get("bytesPerLikedId");
+        // HashSet<Long> 每个元素约 48 字节（节点 32 + Long 16），另加哈希表槽位
+        long hashSetBytes = totalLikes * 52;
+        assertEquals((long) users, ((Number) stats.get("sets")).longValue());
+        assertTrue(bytes * 5 < hashSetBytes, String.format(
+                "compressed sets should be far smaller than HashSet<Long>: %d bytes for %d likes (%.2f/like), HashSet ~%d",
+                bytes, totalLikes, bytesPerLikedId, hashSetBytes));
+
+        // 内存上限为当前占用的一半：淘汰最久未访问的集合，最近访问的用户保留
+        ReflectionTestUtils.setField(likedSetCache, "maxBytes", bytes / 2);
+        likedSetCache.invalidate(Target.MUSIC, (long) users);
+        likedSetCache.isLiked(Target.MUSIC, (long) users, 1L);
+        stats = likedSetCache.getStats();
+        assertTrue((Long) stats.get("bytes") <= bytes / 2);
+        assertTrue((Long) stats.get("evictions") > 0);
+        long loadsBefore = (Long) stats.get("loads");
+        likedSetCache.isLiked(Target.MUSIC, (long) users, 1L);
+        assertEquals(loadsBefore, likedSetCache.getStats().get("loads"));
+    }
+
+    private Set<Long> liked(Long userId) {
+        return likes.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+    }
+}
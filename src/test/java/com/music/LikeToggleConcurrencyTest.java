@@ -0,0 +1,186 @@
+package com.music;
+
+import com.music.entity.User;
+import com.music.repository.MusicLikeRepository;
+import com.music.repository.MusicRepository;
+import com.music.repository.PostLikeRepository;
+import com.music.service.EngagementCounterService;
+import com.music.service.EngagementCounterService.Counter;
+import com.music.service.LikeService;
+import com.music.service.LikedSetCache;
+import com.music.service.LikedSetCache.Target;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+// 点赞幂等性：并发收藏/取消/切换后记录至多一条，计数与缓存和数据库一致（Mock 模拟 InnoDB 行锁）
+public class LikeToggleConcurrencyTest {
+    private static final long USER_ID = 1L;
+    private static final long MUSIC_ID = 1L;
+    private static final int ROUNDS = 300;
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 5;
+
+    private LikeService likeService;
+    private LikedSetCache likedSetCache;
+    private EngagementCounterService engagementCounterService;
+
+    // 模拟的 music_likes 表（"userId_musicId"）与行锁
+    private final Set<String> rows = ConcurrentHashMap.newKeySet();
+    private final Map<String, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<ReentrantLock>> heldLocks = ThreadLocal.withInitial(ArrayList::new);
+
+    @BeforeEach
+    public void setUp() {
+        MusicLikeRepository musicLikeRepository = Mockito.mock(MusicLikeRepository.class);
+        Mockito.when(musicLikeRepository.insertLike(anyLong(), anyLong())).thenAnswer(invocation -> {
+            String row = lockRow(invocation.getArgument(0), invocation.getArgument(1));
+            return rows.add(row) ? 1 : 0;
+        });
+        Mockito.when(musicLikeRepository.deleteLike(anyLong(), anyLong())).thenAnswer(invocation -> {
+            String row = lockRow(invocation.getArgument(0), invocation.getArgument(1));
+            return rows.remove(row) ? 1 : 0;
+        });
+        Mockito.when(musicLikeRepository.existsByUserIdAndMusicId(anyLong(), anyLong()))
+                .thenAnswer(invocation -> rows.contains(invocation.getArgument(0) + "_" + invocation.getArgument(1)));
+        Mockito.when(musicLikeRepository.findMusicIdsByUserId(anyLong())).thenAnswer(invocation -> {
+            String prefix = invocation.getArgument(0) + "_";
+            return rows.stream().filter(row -> row.startsWith(prefix))
+                    .map(row -> Long.valueOf(row.substring(prefix.length()))).toList();
+        });
+        MusicRepository musicRepository = Mockito.mock(MusicRepository.class);
+        Mockito.when(musicRepository.existsById(anyLong())).thenReturn(true);
+
+        engagementCounterService = TestServices.engagementCounterService(Mockito.mock(JdbcTemplate.class),
+                new ConcurrentMapCacheManager());
+        likedSetCache = TestServices.likedSetCache(Mockito.mock(PostLikeRepository.class), musicLikeRepository);
+
+        likeService = new LikeService();
+        ReflectionTestUtils.setField(likeService, "musicLikeRepository", musicLikeRepository);
+        ReflectionTestUtils.setField(likeService, "musicRepository", musicRepository);
+        ReflectionTestUtils.setField(likeService, "engagementCounterService", engagementCounterService);
+        ReflectionTestUtils.setField(likeService, "likedSetCache", likedSetCache);
+    }
+
+    @Test
+    public void concurrentSetUnsetAndToggleOnSamePairStayConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        User user = new User();
+        user.setId(USER_ID);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    Random random = new Random(round * 31L + t);
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < OPS_PER_THREAD; i++) {
+                            int op = random.nextInt(4);
+                            if (op == 0) {
+                                inTransaction(() -> likeService.setMusicLike(user, MUSIC_ID, true));
+                            } else if (op == 1) {
+                                inTransaction(() -> likeService.setMusicLike(user, MUSIC_ID, false));
+                            } else if (op == 2) {
+                                inTransaction(() -> likeService.toggleMusicLike(user, MUSIC_ID));
+                            } else {
+                                // 读取使缓存中有该用户的集合，更新时才会走修改位图的路径
+                                likeService.isMusicLikedByUser(USER_ID, MUSIC_ID);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+
+                boolean liked = rows.contains(USER_ID + "_" + MUSIC_ID);
+                // 收藏数增量只在记录确实变化时累加，始终等于记录数
+                assertEquals(liked ? 1 : 0, engagementCounterService.getPending(Counter.MUSIC_LIKE, MUSIC_ID), "round " + round);
+                assertEquals(liked, likedSetCache.isLiked(Target.MUSIC, USER_ID, MUSIC_ID), "round " + round);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void repeatedClicksFromManyUsersCountOnce() throws Exception {
+        int users = 200;
+        int clicks = 3;
+        long musicId = 2L;
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (long userId = 1; userId <= users; userId++) {
+                User user = new User();
+                user.setId(userId);
+                for (int i = 0; i < clicks; i++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        return inTransaction(() -> likeService.setMusicLike(user, musicId, true));
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(users, rows.size());
+        assertEquals(users, engagementCounterService.getPending(Counter.MUSIC_LIKE, musicId));
+    }
+
+    // 在模拟事务中执行：提交时释放行锁，随后执行提交后的回调
+    private <T> T inTransaction(Callable<T> action) throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            T result = action.call();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            heldLocks.get().forEach(ReentrantLock::unlock);
+            heldLocks.get().clear();
+            Thread.yield();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            return result;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private String lockRow(Long userId, Long musicId) {
+        String row = userId + "_" + musicId;
+        ReentrantLock lock = rowLocks.computeIfAbsent(row, key -> new ReentrantLock());
+        if (!lock.isHeldByCurrentThread()) {
+            lock.lock();
+            heldLocks.get().add(lock);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,68 @@
+package com.music;
+
+import com.music.util.LoudnessMeter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// 用合成的正弦波验证积分响度（参考 EBU Tech 3341 的校准信号）与门限处理
+public class LoudnessMeterTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME = 1152;
+
+    // -23dBFS 的幅度
+    private static final double MINUS_23_DBFS = Math.pow(10, -23 / 20.0);
+
+    @Test
+    public void stereoSineAtMinus23DbfsMeasuresMinus23Lufs() {
+        LoudnessMeter meter = new LoudnessMeter();
+        feed(meter, 1000, MINUS_23_DBFS, 2, 20);
+
+        assertEquals(-23.0, meter.getIntegratedLoudness(), 0.1);
+        assertEquals(MINUS_23_DBFS, meter.getPeak(), 0.001);
+    }
+
+    @Test
+    public void monoSineAtFullScaleMeasuresMinus3Lufs() {
+        LoudnessMeter meter = new LoudnessMeter();
+        feed(meter, 1000, 1.0 - 1.0 / 32768, 1, 10);
+
+        assertEquals(-3.01, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void quietPassagesAreGatedOut() {
+        LoudnessMeter meter = new LoudnessMeter();
+        feed(meter, 1000, MINUS_23_DBFS, 2, 10);
+        // 比主体低 30dB 的段落低于相对门限，不拉低积分响度
+        feed(meter, 1000, MINUS_23_DBFS / 31.6, 2, 10);
+
+        assertEquals(-23.0, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void silenceHasNoLoudness() {
+        LoudnessMeter meter = new LoudnessMeter();
+        feed(meter, 1000, 0, 2, 5);
+
+        assertNull(meter.getIntegratedLoudness());
+        assertEquals(0, meter.getPeak());
+    }
+
+    // 按 MP3 帧大小分块喂入 seconds 秒的正弦波（各声道相同）
+    private void feed(LoudnessMeter meter, double frequency, double amplitude, int channels, int seconds) {
+        short[] buffer = new short[FRAME * channels];
+        int total = SAMPLE_RATE * seconds;
+        for (int start = 0; start < total; start += FRAME) {
+            int count = Math.min(FRAME, total - start);
+            for (int i = 0; i < count; i++) {
+                short value = (short) Math.round(amplitude * 32768 * Math.sin(2 * Math.PI * frequency * (start + i) / SAMPLE_RATE));
+                for (int c = 0; c < channels; c++) {
+                    buffer[i * channels + c] = value;
+                }
+            }
+            meter.process(buffer, count * channels, channels, SAMPLE_RATE);
+        }
+    }
+}
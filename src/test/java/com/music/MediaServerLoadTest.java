@@ -0,0 +1,190 @@
+package com.music;
+
+import com.music.entity.Music;
+import com.music.server.MediaServer;
+import com.music.service.MusicService;
+import com.music.service.PlayEventService;
+import com.music.util.MediaUrlSigner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+// 慢速下载压力下对比 Tomcat 与独立媒体服务器，同时探测 /music/list 的延迟（基准测试，-Pbenchmark 运行）
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=16",
+        "media.server.enabled=true",
+        "media.server.port=0",
+        "media.hot-cache.enabled=false"
+})
+public class MediaServerLoadTest {
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int CLIENTS = 48;
+    private static final int DOWNLOADS_PER_CLIENT = 3;
+    private static final String MUSIC_NAME = "load-test.mp3";
+
+    private static Path musicDir;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MediaServer mediaServer;
+
+    @Autowired
+    private MediaUrlSigner mediaUrlSigner;
+
+    @MockBean
+    private MusicService musicService;
+
+    @MockBean
+    private PlayEventService playEventService;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @DynamicPropertySource
+    static void musicPath(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.music.path", () -> musicDir.toString() + "/");
+    }
+
+    @BeforeAll
+    public static void createMusic() throws Exception {
+        musicDir = Files.createTempDirectory("load-music");
+        TestMediaFiles.write(musicDir.resolve(MUSIC_NAME), FILE_SIZE);
+    }
+
+    @AfterAll
+    public static void deleteMusic() throws Exception {
+        Files.deleteIfExists(musicDir.resolve(MUSIC_NAME));
+        Files.deleteIfExists(musicDir);
+    }
+
+    @BeforeEach
+    public void mockMusic() {
+        Music music = new Music();
+        music.setId(1L);
+        music.setTitle("load-test");
+        music.setFilePath(MUSIC_NAME);
+        when(musicService.getMusicById(any())).thenReturn(Optional.of(music));
+        when(musicService.getMusicFile(anyString())).thenAnswer(invocation -> musicDir.resolve((String) invocation.getArgument(0)).toFile());
+        when(musicService.getMusicList()).thenReturn(List.of());
+    }
+
+    @Test
+    public void compareTomcatWithMediaServer() throws Exception {
+        URI tomcat = URI.create("http://127.0.0.1:" + port + "/api/music/play/1");
+        URI nio = URI.create("http://127.0.0.1:" + mediaServer.getLocalPort()
+                + mediaUrlSigner.sign("music", MUSIC_NAME, 1L, null, null, mediaUrlSigner.nextExpiry()));
+
+        // 预热
+        assertEquals(FILE_SIZE, download(tomcat, false));
+        assertEquals(FILE_SIZE, download(nio, false));
+
+        double tomcatP99 = run(tomcat);
+        double nioP99 = run(nio);
+        // 媒体下载不占用 Tomcat 工作线程时，API 的尾延迟应明显更低
+        assertTrue(nioP99 < tomcatP99, String.format("/music/list p99 during %d slow downloads: tomcat %.1f ms, nio %.1f ms",
+                CLIENTS, tomcatP99, nioP99));
+    }
+
+    // 慢速客户端持续下载期间 /music/list 的 p99 延迟（毫秒）
+    private double run(URI media) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS + 1);
+        AtomicBoolean loading = new AtomicBoolean(true);
+        List<Long> apiLatencies = Collections.synchronizedList(new ArrayList<>());
+        try {
+            Future<?> probe = pool.submit(() -> {
+                URI api = URI.create("http://127.0.0.1:" + port + "/api/music/list");
+                while (loading.get()) {
+                    long start = System.nanoTime();
+                    HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(api).build(), HttpResponse.BodyHandlers.ofByteArray());
+                    assertEquals(200, response.statusCode());
+                    apiLatencies.add(System.nanoTime() - start);
+                    Thread.sleep(20);
+                }
+                return null;
+            });
+
+            List<Future<Long>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(pool.submit(() -> {
+                    long bytes = 0;
+                    for (int j = 0; j < DOWNLOADS_PER_CLIENT; j++) {
+                        bytes += download(media, true);
+                    }
+                    return bytes;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : clients) {
+                total += future.get();
+            }
+            loading.set(false);
+            probe.get();
+
+            assertEquals((long) FILE_SIZE * CLIENTS * DOWNLOADS_PER_CLIENT, total);
+            List<Long> latencies = new ArrayList<>(apiLatencies);
+            Collections.sort(latencies);
+            return percentile(latencies, 99);
+        } finally {
+            loading.set(false);
+            pool.shutdownNow();
+        }
+    }
+
+    // 下载整首歌曲，slow 为 true 时模拟移动网络：每读 64KB 暂停 2 毫秒
+    private long download(URI uri, boolean slow) throws Exception {
+        HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = response.body()) {
+            int read;
+            while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                bytes += read;
+                if (slow) {
+                    Thread.sleep(2);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private double percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(sorted.size() * percentile / 100.0) - 1);
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+}
@@ -0,0 +1,150 @@
+package com.music;
+
+import com.music.server.MediaRequestHandler;
+import com.music.server.MediaServer;
+import com.music.service.HotTrackCache;
+import com.music.service.ImageVariantService;
+import com.music.service.PlayEventService;
+import com.music.service.PreviewService;
+import com.music.service.StorageTierService;
+import com.music.util.FileUploadUtil;
+import com.music.util.MediaStreamUtil;
+import com.music.util.MediaUrlSigner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+// 独立媒体服务器的请求处理：Range、条件请求、签名校验，以及试听片段尚未生成时返回 503 而不在事件循环线程中生成。
+// 不启动 Spring 容器，依赖的服务用 Mock 代替
+public class MediaServerTest {
+    private static final int FILE_SIZE = 256 * 1024;
+    private static final String MUSIC_NAME = "server-test.mp3";
+
+    private Path musicDir;
+    private File musicFile;
+    private MediaServer mediaServer;
+    private MediaUrlSigner mediaUrlSigner;
+    private PreviewService previewService;
+    private PlayEventService playEventService;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        musicDir = Files.createTempDirectory("server-music");
+        musicFile = TestMediaFiles.write(musicDir.resolve(MUSIC_NAME), FILE_SIZE).toFile();
+
+        FileUploadUtil fileUploadUtil = Mockito.mock(FileUploadUtil.class);
+        Mockito.when(fileUploadUtil.getMusicArchiveFile(anyString())).thenAnswer(invocation -> new File(musicDir.toFile(), "missing"));
+        StorageTierService storageTierService = Mockito.mock(StorageTierService.class);
+        Mockito.when(storageTierService.getMusicFileIfHot(MUSIC_NAME)).thenReturn(Optional.of(musicFile));
+        previewService = Mockito.mock(PreviewService.class);
+        playEventService = Mockito.mock(PlayEventService.class);
+
+        MediaStreamUtil mediaStreamUtil = new MediaStreamUtil();
+        ReflectionTestUtils.setField(mediaStreamUtil, "fileUploadUtil", fileUploadUtil);
+        ReflectionTestUtils.setField(mediaStreamUtil, "hotTrackCache", Mockito.mock(HotTrackCache.class));
+
+        mediaUrlSigner = new MediaUrlSigner();
+        ReflectionTestUtils.setField(mediaUrlSigner, "secret", "");
+        ReflectionTestUtils.setField(mediaUrlSigner, "jwtSecret", "media-server-test-secret");
+        ReflectionTestUtils.setField(mediaUrlSigner, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(mediaUrlSigner, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(mediaUrlSigner, "contextPath", "/api");
+        mediaUrlSigner.init();
+
+        MediaRequestHandler handler = new MediaRequestHandler();
+        ReflectionTestUtils.setField(handler, "fileUploadUtil", fileUploadUtil);
+        ReflectionTestUtils.setField(handler, "mediaStreamUtil", mediaStreamUtil);
+        ReflectionTestUtils.setField(handler, "mediaUrlSigner", mediaUrlSigner);
+        ReflectionTestUtils.setField(handler, "imageVariantService", Mockito.mock(ImageVariantService.class));
+        ReflectionTestUtils.setField(handler, "previewService", previewService);
+        ReflectionTestUtils.setField(handler, "playEventService", playEventService);
+        ReflectionTestUtils.setField(handler, "hotTrackCache", Mockito.mock(HotTrackCache.class));
+        ReflectionTestUtils.setField(handler, "storageTierService", storageTierService);
+        ReflectionTestUtils.setField(handler, "contextPath", "/api");
+
+        mediaServer = new MediaServer();
+        ReflectionTestUtils.setField(mediaServer, "handler", handler);
+        ReflectionTestUtils.setField(mediaServer, "enabled", true);
+        ReflectionTestUtils.setField(mediaServer, "port", 0);
+        ReflectionTestUtils.setField(mediaServer, "ioThreads", 1);
+        ReflectionTestUtils.setField(mediaServer, "maxConnections", 100);
+        ReflectionTestUtils.setField(mediaServer, "idleTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(mediaServer, "maxHeaderSize", 8192);
+        mediaServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mediaServer.stop();
+        Files.deleteIfExists(musicFile.toPath());
+        Files.deleteIfExists(musicDir);
+    }
+
+    @Test
+    public void handlesRangeAndConditionalRequests() throws Exception {
+        URI uri = signed("music", 1L);
+
+        HttpResponse<byte[]> range = send(HttpRequest.newBuilder(uri).header("Range", "bytes=100-199").build());
+        assertEquals(206, range.statusCode());
+        assertEquals("bytes 100-199/" + FILE_SIZE, range.headers().firstValue("Content-Range").orElse(null));
+        assertEquals(100, range.body().length);
+
+        String etag = range.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<byte[]> notModified = send(HttpRequest.newBuilder(uri).header("If-None-Match", etag).build());
+        assertEquals(304, notModified.statusCode());
+        assertEquals(0, notModified.body().length);
+
+        HttpResponse<byte[]> tampered = send(HttpRequest.newBuilder(URI.create(uri.toString().replace("m=1", "m=2"))).build());
+        assertEquals(403, tampered.statusCode());
+
+        HttpResponse<byte[]> unsatisfiable = send(HttpRequest.newBuilder(uri).header("Range", "bytes=" + FILE_SIZE + "-").build());
+        assertEquals(416, unsatisfiable.statusCode());
+
+        // 只有从头开始输出内容的 GET 计一次播放：Range 从 100 开始、304、416 与 HEAD 都不计
+        HttpResponse<byte[]> head = send(HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build());
+        assertEquals(200, head.statusCode());
+        Mockito.verify(playEventService, Mockito.never()).recordPlay(any(), any(), any());
+        HttpResponse<byte[]> full = send(HttpRequest.newBuilder(uri).build());
+        assertEquals(FILE_SIZE, full.body().length);
+        Mockito.verify(playEventService).recordPlay(1L, null, null);
+    }
+
+    @Test
+    public void previewNotReadyReturnsRetryAfter() throws Exception {
+        Mockito.when(previewService.getPreviewIfReady(musicFile)).thenReturn(Optional.empty());
+        HttpResponse<byte[]> pending = send(HttpRequest.newBuilder(signed("preview", null)).build());
+        assertEquals(503, pending.statusCode());
+        assertEquals("1", pending.headers().firstValue("Retry-After").orElse(null));
+
+        Mockito.when(previewService.isUnavailable(musicFile)).thenReturn(true);
+        assertEquals(404, send(HttpRequest.newBuilder(signed("preview", null)).build()).statusCode());
+        // 事件循环线程不调用会阻塞的生成方法
+        Mockito.verify(previewService, Mockito.never()).getPreview(any());
+    }
+
+    private URI signed(String type, Long musicId) {
+        return URI.create("http://127.0.0.1:" + mediaServer.getLocalPort()
+                + mediaUrlSigner.sign(type, MUSIC_NAME, musicId, null, null, mediaUrlSigner.nextExpiry()));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
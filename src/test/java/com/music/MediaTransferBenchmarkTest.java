@@ -0,0 +1,124 @@
+package com.music;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 对比旧的流拷贝输出（FileSystemResource -> StreamUtils.copy）与 FileChannel.transferTo（sendfile）输出同一文件的吞吐与 CPU 开销
+@Tag("benchmark")
+public class MediaTransferBenchmarkTest {
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int ROUNDS = 5;
+
+    private Path mediaFile;
+    private ExecutorService drainer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        mediaFile = Files.createTempFile("bench-media", ".mp3");
+        TestMediaFiles.write(mediaFile, FILE_SIZE);
+        drainer = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        drainer.shutdownNow();
+        Files.deleteIfExists(mediaFile);
+    }
+
+    @Test
+    public void compareStreamCopyWithTransferTo() throws Exception {
+        // 预热
+        runRound(false);
+        runRound(true);
+
+        long[] copy = new long[2];
+        long[] zeroCopy = new long[2];
+        for (int i = 0; i < ROUNDS; i++) {
+            accumulate(copy, runRound(false));
+            accumulate(zeroCopy, runRound(true));
+        }
+
+        // 零拷贝输出时发送线程不再把文件内容搬进用户态缓冲区
+        assertTrue(zeroCopy[1] < copy[1], String.format("sender CPU per Gbit: transferTo %.1f ms, stream copy %.1f ms",
+                cpuMsPerGbit(zeroCopy), cpuMsPerGbit(copy)));
+    }
+
+    // 返回 {耗时纳秒, 发送线程 CPU 纳秒}
+    private long[] runRound(boolean zeroCopy) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            Future<Long> received = drainer.submit(() -> drain(server));
+
+            try (SocketChannel socket = SocketChannel.open(server.getLocalAddress())) {
+                long cpuStart = threadBean.getCurrentThreadCpuTime();
+                long start = System.nanoTime();
+                if (zeroCopy) {
+                    try (FileChannel channel = FileChannel.open(mediaFile, StandardOpenOption.READ)) {
+                        long position = 0;
+                        while (position < FILE_SIZE) {
+                            position += channel.transferTo(position, FILE_SIZE - position, socket);
+                        }
+                    }
+                } else {
+                    try (InputStream in = Files.newInputStream(mediaFile)) {
+                        OutputStream out = Channels.newOutputStream(socket);
+                        StreamUtils.copy(in, out);
+                        out.flush();
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                long cpu = threadBean.getCurrentThreadCpuTime() - cpuStart;
+                socket.shutdownOutput();
+                assertEquals(FILE_SIZE, received.get().longValue());
+                return new long[]{elapsed, cpu};
+            }
+        }
+    }
+
+    private long drain(ServerSocketChannel server) throws Exception {
+        try (SocketChannel client = server.accept()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            long total = 0;
+            int read;
+            while ((read = client.read(buffer)) >= 0) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+
+    private void accumulate(long[] total, long[] round) {
+        total[0] += round[0];
+        total[1] += round[1];
+    }
+
+    private double cpuMsPerGbit(long[] total) {
+        double gbits = (double) FILE_SIZE * ROUNDS * 8 / 1e9;
+        return total[1] / 1e6 / gbits;
+    }
+}
@@ -0,0 +1,205 @@
+package com.music;
+
+import com.music.util.Mp3FrameIndex;
+import com.music.util.Mp3Metadata;
+import com.music.util.Mp3Parser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 用合成的 MPEG1 Layer III 帧验证 MP3 解析与帧索引
+public class Mp3ParserTest {
+    // MPEG1 Layer III, 128kbps, 44100Hz, 无填充, 立体声：帧长 144 * 128000 / 44100 = 417 字节
+    private static final byte[] HEADER_128K = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    // 同参数 192kbps：帧长 626 字节
+    private static final byte[] HEADER_192K = {(byte) 0xFF, (byte) 0xFB, (byte) 0xB0, 0x00};
+
+    private final Mp3Parser parser = new Mp3Parser();
+    private Path dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("mp3-parser");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (var files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void parsesId3v2TagsAndCountsFrames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(id3v23(textFrame("TIT2", "晴天"), textFrame("TPE1", "周杰伦"), textFrame("TALB", "叶惠美")));
+        for (int i = 0; i < 1000; i++) {
+            out.write(frame(HEADER_128K, 417));
+        }
+        File file = write("tagged.mp3", out.toByteArray());
+
+        Mp3Metadata metadata = parser.parse(file);
+
+        assertEquals("晴天", metadata.getTitle());
+        assertEquals("周杰伦", metadata.getArtist());
+        assertEquals("叶惠美", metadata.getAlbum());
+        assertEquals(1000, metadata.getFrameCount());
+        assertEquals(44100, metadata.getSampleRate());
+        assertEquals(2, metadata.getChannels());
+        // 1000 帧 * 1152 采样 / 44100Hz = 26.122 秒
+        assertEquals(26122, metadata.getDurationMillis());
+        assertEquals(26, metadata.getDurationSeconds());
+        assertFalse(metadata.isVbr());
+        assertEquals(128, Math.round(metadata.getBitrate() / 1000.0));
+    }
+
+    @Test
+    public void ignoresEncryptedAndGroupedTextFrames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 2.3 格式标志：0x40 加密，0x20 分组（数据前多一个分组字节）
+        out.write(id3v23(textFrame("TIT2", "加密标题", 0x40), textFrame("TPE1", "分组歌手", 0x20),
+                textFrame("TALB", "叶惠美")));
+        out.write(frame(HEADER_128K, 417));
+        File file = write("flagged.mp3", out.toByteArray());
+
+        Mp3Metadata metadata = parser.parse(file);
+
+        assertNull(metadata.getTitle());
+        assertNull(metadata.getArtist());
+        assertEquals("叶惠美", metadata.getAlbum());
+    }
+
+    @Test
+    public void skipsXingFrameJunkAndId3v1() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Xing 头帧：边信息（立体声 32 字节）之后为 "Xing"、flags=1、帧数
+        byte[] xing = frame(HEADER_128K, 417);
+        System.arraycopy("Xing".getBytes(StandardCharsets.ISO_8859_1), 0, xing, 36, 4);
+        xing[43] = 1;
+        xing[47] = 20;
+        out.write(xing);
+        for (int i = 0; i < 10; i++) {
+            out.write(frame(HEADER_128K, 417));
+        }
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7}); // 帧间垃圾数据
+        for (int i = 0; i < 10; i++) {
+            out.write(frame(HEADER_192K, 626));
+        }
+        out.write(id3v1("Fallback Title", "Fallback Artist"));
+        File file = write("vbr.mp3", out.toByteArray());
+
+        Mp3Metadata metadata = parser.parse(file);
+
+        assertEquals(20, metadata.getFrameCount());
+        assertTrue(metadata.isVbr());
+        assertEquals("Fallback Title", metadata.getTitle());
+        assertEquals("Fallback Artist", metadata.getArtist());
+
+        Mp3FrameIndex index = metadata.getFrameIndex();
+        assertEquals(417, index.getFirstFrameOffset());
+        // 垃圾数据并入第 10 帧，之后的帧偏移依然准确
+        assertEquals(417 + 417 * 9, index.getFrameOffset(9));
+        assertEquals(417 + 7, index.getFrameSize(9));
+        assertEquals(417 + 417 * 10 + 7, index.getFrameOffset(10));
+        assertEquals(file.length() - 128, index.getAudioEndOffset());
+    }
+
+    @Test
+    public void frameIndexRoundTripsAndSeeksByTime() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 500; i++) {
+            out.write(frame(HEADER_128K, 417));
+        }
+        File file = write("seek.mp3", out.toByteArray());
+        Mp3FrameIndex index = parser.parse(file).getFrameIndex();
+
+        File indexFile = Mp3FrameIndex.indexFileFor(file);
+        index.write(indexFile);
+        Mp3FrameIndex loaded = Mp3FrameIndex.read(indexFile);
+
+        assertEquals(500, loaded.getFrameCount());
+        assertEquals(index.getDurationMillis(), loaded.getDurationMillis());
+        // 每帧约 26.12ms，10 秒处为第 382 帧
+        assertEquals(382, loaded.frameAt(10_000));
+        assertEquals(382L * 417, loaded.offsetAt(10_000));
+        assertEquals(0, loaded.offsetAt(-5));
+        assertEquals(500L * 417, loaded.offsetAt(3_600_000));
+    }
+
+    @Test
+    public void returnsEmptyMetadataForNonAudio() throws Exception {
+        File file = write("noise.mp3", "definitely not an mp3 file".getBytes(StandardCharsets.UTF_8));
+
+        Mp3Metadata metadata = parser.parse(file);
+
+        assertEquals(0, metadata.getFrameCount());
+        assertNull(metadata.getFrameIndex());
+        assertNull(metadata.getTitle());
+    }
+
+    private File write(String name, byte[] content) throws Exception {
+        Path path = dir.resolve(name);
+        Files.write(path, content);
+        return path.toFile();
+    }
+
+    // 帧头 + 全零数据（不会出现同步字）
+    private byte[] frame(byte[] header, int length) {
+        byte[] frame = new byte[length];
+        System.arraycopy(header, 0, frame, 0, 4);
+        return frame;
+    }
+
+    // ID3v2.3 文本帧，UTF-16 带 BOM
+    private byte[] textFrame(String id, String text) throws Exception {
+        return textFrame(id, text, 0);
+    }
+
+    private byte[] textFrame(String id, String text, int formatFlags) throws Exception {
+        byte[] value = text.getBytes(StandardCharsets.UTF_16);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(id.getBytes(StandardCharsets.ISO_8859_1));
+        int size = value.length + 1;
+        out.write(new byte[]{(byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size, 0, (byte) formatFlags});
+        out.write(1);
+        out.write(value);
+        return out.toByteArray();
+    }
+
+    private byte[] id3v23(byte[]... frames) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            body.write(frame);
+        }
+        body.write(new byte[32]); // 填充区
+        int size = body.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{'I', 'D', '3', 3, 0, 0,
+                (byte) ((size >> 21) & 0x7F), (byte) ((size >> 14) & 0x7F), (byte) ((size >> 7) & 0x7F), (byte) (size & 0x7F)});
+        out.write(body.toByteArray());
+        return out.toByteArray();
+    }
+
+    private byte[] id3v1(String title, String artist) {
+        byte[] tag = new byte[128];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        byte[] titleBytes = title.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] artistBytes = artist.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(titleBytes, 0, tag, 3, titleBytes.length);
+        System.arraycopy(artistBytes, 0, tag, 33, artistBytes.length);
+        return tag;
+    }
+}
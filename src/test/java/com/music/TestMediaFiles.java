@@ -0,0 +1,38 @@
+package com.music;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// 测试用媒体文件：由同一个 1MB 随机块（固定种子）重复组成，任意区间的内容都可以直接算出
+public final class TestMediaFiles {
+    private static final byte[] BLOCK = new byte[1024 * 1024];
+
+    static {
+        new Random(42).nextBytes(BLOCK);
+    }
+
+    private TestMediaFiles() {
+    }
+
+    // 写入 size 字节的测试文件，返回该文件
+    public static Path write(Path file, long size) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += BLOCK.length) {
+                out.write(BLOCK, 0, (int) Math.min(BLOCK.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    // 测试文件中从 offset 开始的 length 个字节
+    public static byte[] expected(long offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = BLOCK[(int) ((offset + i) % BLOCK.length)];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,41 @@
+package com.music;
+
+import com.music.repository.CommentLikeRepository;
+import com.music.repository.MusicLikeRepository;
+import com.music.repository.PostLikeRepository;
+import com.music.service.EngagementCounterService;
+import com.music.service.LikedSetCache;
+import org.mockito.Mockito;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+// 不启动 Spring 直接构造的服务，配置取默认值，数据库依赖由测试传入
+public final class TestServices {
+
+    private TestServices() {
+    }
+
+    public static EngagementCounterService engagementCounterService(JdbcTemplate jdbcTemplate, CacheManager cacheManager) {
+        EngagementCounterService service = new EngagementCounterService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(service, "stripeCount", 16);
+        service.init();
+        return service;
+    }
+
+    public static LikedSetCache likedSetCache(PostLikeRepository postLikeRepository, MusicLikeRepository musicLikeRepository) {
+        LikedSetCache cache = new LikedSetCache();
+        ReflectionTestUtils.setField(cache, "postLikeRepository", postLikeRepository);
+        ReflectionTestUtils.setField(cache, "commentLikeRepository", Mockito.mock(CommentLikeRepository.class));
+        ReflectionTestUtils.setField(cache, "musicLikeRepository", musicLikeRepository);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxUsers", 20_000);
+        ReflectionTestUtils.setField(cache, "maxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        return cache;
+    }
+}
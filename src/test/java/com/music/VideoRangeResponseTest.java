@@ -0,0 +1,74 @@
+package com.music;
+
+import com.music.service.HotTrackCache;
+import com.music.util.FileUploadUtil;
+import com.music.util.MediaStreamUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 视频 Range 响应：开放式 Range 每次只返回一段，指定结束位置的 Range 按原样返回，超出文件长度返回 416
+public class VideoRangeResponseTest {
+    private static final int FILE_SIZE = 12 * 1024 * 1024;
+    private static final int RANGE_CHUNK = 4 * 1024 * 1024;
+
+    private MediaStreamUtil mediaStreamUtil;
+    private Path video;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        video = Files.createTempFile("range-video", ".mp4");
+        TestMediaFiles.write(video, FILE_SIZE);
+        mediaStreamUtil = new MediaStreamUtil();
+        ReflectionTestUtils.setField(mediaStreamUtil, "hotTrackCache", Mockito.mock(HotTrackCache.class));
+        ReflectionTestUtils.setField(mediaStreamUtil, "fileUploadUtil", Mockito.mock(FileUploadUtil.class));
+        ReflectionTestUtils.setField(mediaStreamUtil, "maxVideoRangeChunk", (long) RANGE_CHUNK);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(video);
+    }
+
+    @Test
+    public void rangeResponses() throws Exception {
+        // 开放式 Range 只返回一段
+        MockHttpServletResponse first = get("bytes=0-");
+        assertEquals(206, first.getStatus());
+        assertEquals("bytes 0-" + (RANGE_CHUNK - 1) + "/" + FILE_SIZE, first.getHeader("Content-Range"));
+        assertEquals(RANGE_CHUNK, first.getContentAsByteArray().length);
+        assertTrue(first.getContentType().startsWith("video/mp4"));
+
+        // 指定结束位置的 Range 按原样返回
+        long start = FILE_SIZE - 3L * 1024 * 1024 - 17;
+        MockHttpServletResponse closed = get("bytes=" + start + "-" + (FILE_SIZE - 1));
+        assertEquals(206, closed.getStatus());
+        assertEquals(FILE_SIZE - start, closed.getContentAsByteArray().length);
+        assertArrayEquals(TestMediaFiles.expected(start, 64), Arrays.copyOf(closed.getContentAsByteArray(), 64));
+
+        // 超出文件长度
+        MockHttpServletResponse unsatisfiable = get("bytes=" + FILE_SIZE + "-");
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */" + FILE_SIZE, unsatisfiable.getHeader("Content-Range"));
+    }
+
+    private MockHttpServletResponse get(String range) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/video/range-video.mp4");
+        request.addHeader("Range", range);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mediaStreamUtil.writeVideo(request, response, video.toFile(), mediaStreamUtil.getDefaultCacheControl());
+        return response;
+    }
+}
@@ -0,0 +1,126 @@
+package com.music;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 通过 HTTP 请求 /files/video 测量整段下载吞吐与随机拖动的响应延迟（基准测试默认不运行，见 -Pbenchmark；Range 响应的正确性见 VideoRangeResponseTest）
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class VideoStreamingBenchmarkTest {
+    private static final int FILE_SIZE = 96 * 1024 * 1024;
+    private static final int RANGE_CHUNK = 4 * 1024 * 1024;
+    private static final int SEEKS = 200;
+    private static final int SEEK_LENGTH = 1024 * 1024;
+    // 本机回环下的下限，明显低于该值说明输出路径退化（如退回整文件缓冲）
+    private static final double MIN_DOWNLOAD_MB_PER_SECOND = 50;
+    private static final double MAX_SEEK_P99_MILLIS = 200;
+    private static final String VIDEO_NAME = "bench-video.mp4";
+
+    private static Path videoDir;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void videoPath(DynamicPropertyRegistry registry) {
+        registry.add("file.upload.video.path", () -> videoDir.toString() + "/");
+        registry.add("media.video.max-range-chunk", () -> RANGE_CHUNK);
+    }
+
+    @BeforeAll
+    public static void createVideo() throws Exception {
+        videoDir = Files.createTempDirectory("bench-video");
+        TestMediaFiles.write(videoDir.resolve(VIDEO_NAME), FILE_SIZE);
+    }
+
+    @AfterAll
+    public static void deleteVideo() throws Exception {
+        Files.deleteIfExists(videoDir.resolve(VIDEO_NAME));
+        Files.deleteIfExists(videoDir);
+    }
+
+    @Test
+    public void benchmarkFullDownloadAndSeeks() throws Exception {
+        // 预热
+        download();
+        seek(new Random(1));
+
+        long start = System.nanoTime();
+        long bytes = download();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(FILE_SIZE, bytes);
+        double mbPerSecond = bytes / seconds / (1024 * 1024);
+        assertTrue(mbPerSecond > MIN_DOWNLOAD_MB_PER_SECOND, String.format("full download %.1f MB/s", mbPerSecond));
+
+        Random random = new Random(7);
+        long[] latencies = new long[SEEKS];
+        for (int i = 0; i < SEEKS; i++) {
+            latencies[i] = seek(random);
+        }
+        Arrays.sort(latencies);
+        double p99Millis = latencies[SEEKS * 99 / 100] / 1e6;
+        assertTrue(p99Millis < MAX_SEEK_P99_MILLIS, String.format("seek (%d KB range): p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                SEEK_LENGTH / 1024, latencies[SEEKS / 2] / 1e6, p99Millis, latencies[SEEKS - 1] / 1e6));
+    }
+
+    // 模拟播放器顺序拉取：开放式 Range，按 Content-Range 继续请求
+    private long download() throws Exception {
+        long position = 0;
+        byte[] buffer = new byte[64 * 1024];
+        while (position < FILE_SIZE) {
+            HttpRequest request = HttpRequest.newBuilder(videoUri()).header("Range", "bytes=" + position + "-").build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            assertEquals(206, response.statusCode());
+            try (InputStream in = response.body()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    position += read;
+                }
+            }
+        }
+        return position;
+    }
+
+    // 随机位置读取一段，返回完整响应耗时（纳秒）
+    private long seek(Random random) throws Exception {
+        long offset = (long) random.nextInt(FILE_SIZE - SEEK_LENGTH);
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = get("bytes=" + offset + "-" + (offset + SEEK_LENGTH - 1));
+        long elapsed = System.nanoTime() - start;
+        assertEquals(206, response.statusCode());
+        assertEquals(SEEK_LENGTH, response.body().length);
+        assertArrayEquals(TestMediaFiles.expected(offset, 16), Arrays.copyOf(response.body(), 16));
+        return elapsed;
+    }
+
+    private HttpResponse<byte[]> get(String range) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(videoUri()).header("Range", range).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI videoUri() {
+        return URI.create("http://127.0.0.1:" + port + "/api/files/video/" + VIDEO_NAME);
+    }
+}